@@ -0,0 +1,252 @@
+package onlineshopping.audience;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import onlineshopping.constants.AudienceMetric;
+import onlineshopping.entity.Order;
+import onlineshopping.exc.HandleExceptions;
+import onlineshopping.model.AudienceResponse;
+import onlineshopping.model.DistinctCount;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Distinct buyers per day and per month, and distinct viewers per item, counted with {@link HyperLogLog} sketches.
+ * Checkouts and item views go into in-memory sketches that are merged into the stored ones on every flush, under a
+ * row lock, so any number of nodes can count the same day or item. Counting someone twice is harmless, which also
+ * makes the startup backfill of buyers from past orders safe to repeat.
+ */
+@Slf4j
+@Component
+public class AudienceCounter {
+
+    private static final int MAX_DAYS = 366;
+    private static final int MAX_MONTHS = 60;
+
+    private static final String SELECT_FOR_UPDATE =
+            "SELECT sketch_key, registers FROM audience_sketches WHERE metric = :metric AND sketch_key IN (:keys) " +
+                    "ORDER BY sketch_key FOR UPDATE";
+    private static final String SELECT =
+            "SELECT sketch_key, registers FROM audience_sketches WHERE metric = :metric AND sketch_key IN (:keys)";
+    // an empty row first, so the SELECT FOR UPDATE below has a row to lock even for a brand new day or item
+    private static final String INSERT_EMPTY =
+            "INSERT INTO audience_sketches (metric, sketch_key, registers, date_updated) VALUES (?, ?, ?, ?) " +
+                    "ON CONFLICT (metric, sketch_key) DO NOTHING";
+    private static final String UPDATE =
+            "UPDATE audience_sketches SET registers = ?, date_updated = ? WHERE metric = ? AND sketch_key = ?";
+    private static final String PAST_BUYERS =
+            "SELECT user_id, date_created FROM orders WHERE user_id IS NOT NULL AND date_created IS NOT NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int precision;
+
+    // what this node counted since its last flush
+    private final ConcurrentMap<Key, HyperLogLog> pending = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+
+    public AudienceCounter(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${audience.precision:12}") int precision
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.precision = precision;
+    }
+
+    // called inside the checkout transaction, the buyers are counted once it commits
+    public void bought(List<Order> orders) {
+        List<Runnable> offers = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            if (order.getCustomer() == null || order.getCustomer().getUserId() == null) {
+                continue;
+            }
+            String buyer = order.getCustomer().getUserId().toString();
+            LocalDate day = order.getDate_created() == null ? LocalDate.now() : order.getDate_created().toLocalDate();
+            offers.add(() -> buyer(buyer, day));
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    offers.forEach(Runnable::run);
+                }
+            });
+        } else {
+            offers.forEach(Runnable::run);
+        }
+    }
+
+    public void viewed(String itemNo, String viewer) {
+        offer(new Key(AudienceMetric.item_viewers, itemNo), viewer);
+    }
+
+    public AudienceResponse buyers(int days, int months) {
+        if (days < 0 || days > MAX_DAYS || months < 0 || months > MAX_MONTHS) {
+            throw new HandleExceptions("Up to " + MAX_DAYS + " days and " + MAX_MONTHS + " months can be read at once");
+        }
+        List<String> dayKeys = new ArrayList<>(days);
+        LocalDate today = LocalDate.now();
+        for (int i = days - 1; i >= 0; i--) {
+            dayKeys.add(today.minusDays(i).toString());
+        }
+        List<String> monthKeys = new ArrayList<>(months);
+        YearMonth month = YearMonth.now();
+        for (int i = months - 1; i >= 0; i--) {
+            monthKeys.add(month.minusMonths(i).toString());
+        }
+        return new AudienceResponse(count(AudienceMetric.daily_buyers, dayKeys),
+                count(AudienceMetric.monthly_buyers, monthKeys), new HyperLogLog(precision).standardError());
+    }
+
+    public DistinctCount viewers(String itemNo) {
+        return count(AudienceMetric.item_viewers, List.of(itemNo)).get(0);
+    }
+
+    @Scheduled(fixedDelayString = "${audience.flush-interval:PT30S}")
+    public void flush() {
+        synchronized (flushLock) {
+            Map<Key, HyperLogLog> deltas = new TreeMap<>();
+            for (Key key : new ArrayList<>(pending.keySet())) {
+                HyperLogLog delta = pending.remove(key);
+                if (delta != null) {
+                    deltas.put(key, delta);
+                }
+            }
+            if (deltas.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(deltas));
+            } catch (RuntimeException e) {
+                // merging is idempotent, the deltas simply go back for the next flush
+                deltas.forEach((key, delta) -> pending.merge(key, delta, (current, back) -> {
+                    current.merge(back);
+                    return current;
+                }));
+                log.error("Could not write {} audience sketches, retrying later", deltas.size(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        flush();
+    }
+
+    // counts the buyers of the orders placed before the sketches existed, once
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        Integer stored = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM audience_sketches WHERE metric = ?", Integer.class, AudienceMetric.daily_buyers.name());
+        if (stored != null && stored > 0) {
+            return;
+        }
+        jdbcTemplate.query(PAST_BUYERS, row -> {
+            buyer(row.getString("user_id"), row.getTimestamp("date_created").toLocalDateTime().toLocalDate());
+        });
+        flush();
+        log.info("Audience sketches built from past orders");
+    }
+
+    private void buyer(String buyer, LocalDate day) {
+        offer(new Key(AudienceMetric.daily_buyers, day.toString()), buyer);
+        offer(new Key(AudienceMetric.monthly_buyers, YearMonth.from(day).toString()), buyer);
+    }
+
+    private void offer(Key key, String element) {
+        // compute runs atomically with the remove in flush, no offer can land in a sketch already taken
+        pending.compute(key, (k, sketch) -> {
+            HyperLogLog target = sketch == null ? new HyperLogLog(precision) : sketch;
+            target.offer(element);
+            return target;
+        });
+    }
+
+    private void write(Map<Key, HyperLogLog> deltas) {
+        Map<AudienceMetric, Map<String, HyperLogLog>> byMetric = new EnumMap<>(AudienceMetric.class);
+        deltas.forEach((key, delta) -> byMetric.computeIfAbsent(key.metric, metric -> new TreeMap<>()).put(key.value, delta));
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now().withNano(0));
+        byte[] empty = new HyperLogLog(precision).toBytes();
+        List<Object[]> missing = new ArrayList<>(deltas.size());
+        deltas.keySet().forEach(key -> missing.add(new Object[]{key.metric.name(), key.value, empty, now}));
+        jdbcTemplate.batchUpdate(INSERT_EMPTY, missing);
+
+        // every row exists now, so the lock serializes nodes merging into the same sketch
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        byMetric.forEach((metric, sketches) -> {
+            Map<String, HyperLogLog> stored = load(SELECT_FOR_UPDATE, metric, sketches.keySet());
+            sketches.forEach((value, delta) -> {
+                HyperLogLog merged = stored.getOrDefault(value, new HyperLogLog(precision));
+                merged.merge(delta);
+                rows.add(new Object[]{merged.toBytes(), now, metric.name(), value});
+            });
+        });
+        jdbcTemplate.batchUpdate(UPDATE, rows);
+    }
+
+    private List<DistinctCount> count(AudienceMetric metric, List<String> keys) {
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        Map<String, HyperLogLog> stored = load(SELECT, metric, keys);
+        List<DistinctCount> counts = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            HyperLogLog sketch = stored.getOrDefault(key, new HyperLogLog(precision));
+            HyperLogLog unflushed = snapshot(new Key(metric, key));
+            if (unflushed != null) {
+                sketch.merge(unflushed);
+            }
+            long estimate = sketch.cardinality();
+            counts.add(new DistinctCount(key, estimate, (long) Math.ceil(2 * sketch.standardError() * estimate)));
+        }
+        return counts;
+    }
+
+    private HyperLogLog snapshot(Key key) {
+        HyperLogLog[] copy = new HyperLogLog[1];
+        pending.computeIfPresent(key, (k, sketch) -> {
+            copy[0] = sketch.copy();
+            return sketch;
+        });
+        return copy[0];
+    }
+
+    private Map<String, HyperLogLog> load(String sql, AudienceMetric metric, Collection<String> keys) {
+        Map<String, HyperLogLog> sketches = new HashMap<>();
+        namedJdbcTemplate.query(sql, new MapSqlParameterSource("metric", metric.name()).addValue("keys", keys), row -> {
+            sketches.put(row.getString("sketch_key"), HyperLogLog.fromBytes(row.getBytes("registers")));
+        });
+        return sketches;
+    }
+
+    private record Key(AudienceMetric metric, String value) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key other) {
+            int byMetric = metric.compareTo(other.metric);
+            return byMetric != 0 ? byMetric : value.compareTo(other.value);
+        }
+    }
+}
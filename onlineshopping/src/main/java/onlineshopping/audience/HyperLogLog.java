@@ -0,0 +1,148 @@
+package onlineshopping.audience;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HyperLogLog (Flajolet et al.) distinct counter: 2^precision registers, each keeping the longest run of leading
+ * zeros seen among the hashes routed to it. The estimate has a relative standard error of 1.04 / sqrt(registers)
+ * whatever the count, adding an element already seen changes nothing, and two sketches of the same precision merge
+ * into the sketch of the union by taking the larger register. Not thread safe.
+ */
+public class HyperLogLog {
+
+    private static final byte DENSE = 0;
+    private static final byte SPARSE = 1;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between 4 and 16");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    // true when a register moved, so the sketch has to be written again
+    public boolean offer(String element) {
+        long hash = hash(element);
+        int index = (int) (hash >>> (64 - precision));
+        // the sentinel bit caps the rank when every remaining bit is zero
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+            return true;
+        }
+        return false;
+    }
+
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Only sketches of the same precision can be merged");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long cardinality() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        // linear counting is more accurate while many registers are still empty; 64-bit hashes need no large-range fix
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public double standardError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    public HyperLogLog copy() {
+        HyperLogLog copy = new HyperLogLog(precision);
+        System.arraycopy(registers, 0, copy.registers, 0, registers.length);
+        return copy;
+    }
+
+    /**
+     * A format byte and the precision, then either every register (one byte each) or, while few registers are set,
+     * only those as index and value triples, so a sketch of a handful of elements takes a few bytes.
+     */
+    public byte[] toBytes() {
+        int set = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                set++;
+            }
+        }
+        if (set * 3 >= registers.length) {
+            byte[] bytes = new byte[2 + registers.length];
+            bytes[0] = DENSE;
+            bytes[1] = (byte) precision;
+            System.arraycopy(registers, 0, bytes, 2, registers.length);
+            return bytes;
+        }
+        byte[] bytes = new byte[2 + set * 3];
+        bytes[0] = SPARSE;
+        bytes[1] = (byte) precision;
+        int position = 2;
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] != 0) {
+                bytes[position++] = (byte) (i >>> 8);
+                bytes[position++] = (byte) i;
+                bytes[position++] = registers[i];
+            }
+        }
+        return bytes;
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        HyperLogLog sketch = new HyperLogLog(bytes[1]);
+        if (bytes[0] == DENSE) {
+            System.arraycopy(bytes, 2, sketch.registers, 0, sketch.registers.length);
+        } else {
+            for (int position = 2; position + 2 < bytes.length; position += 3) {
+                int index = ((bytes[position] & 0xFF) << 8) | (bytes[position + 1] & 0xFF);
+                sketch.registers[index] = bytes[position + 2];
+            }
+        }
+        return sketch;
+    }
+
+    private static double alpha(int m) {
+        return switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+    }
+
+    // 64-bit FNV-1a over the UTF-8 bytes with a murmur finalizer, String.hashCode has too few bits for the registers
+    private static long hash(String element) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : element.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,14 @@
+package onlineshopping.catalog;
+
+import onlineshopping.entity.Item;
+
+import java.util.Collection;
+
+// in-memory indexes derived from the catalog, fed by CatalogSnapshot so they never read the database themselves
+public interface CatalogListener {
+
+    void onCatalogLoaded(Collection<Item> items);
+
+    // previous is null for a newly published item, current is null when the item disappeared
+    void onItemChanged(Item previous, Item current);
+}
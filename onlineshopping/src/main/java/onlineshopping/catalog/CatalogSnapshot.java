@@ -0,0 +1,211 @@
+package onlineshopping.catalog;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import onlineshopping.entity.Item;
+import onlineshopping.exc.DatabaseAccessException;
+import onlineshopping.model.SingleFlightStats;
+import onlineshopping.repo.ItemRepo;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable, pre-serialized view of the whole catalog served by GET /api/v1/search/items.
+ * The full table is read once. Afterwards the items named by {@link ItemChangedEvent}s are only marked dirty, and a
+ * short schedule reloads all of them with one query and publishes a single new snapshot, so a burst of checkouts
+ * costs one copy of the catalog instead of one per changed line. Each item keeps its own serialized fragment.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogSnapshot {
+
+    private static final Comparator<Item> ORDER = Comparator
+            .comparing(Item::getItemName, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+            .thenComparing(Item::getItemNo);
+
+    private final ItemRepo itemRepo;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<CatalogListener> listeners;
+
+    // differs between restarts so clients never reuse an ETag issued by a previous process
+    private final String generation = Long.toHexString(System.currentTimeMillis());
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+    private final SingleFlight<String, Snapshot> flights = new SingleFlight<>("catalog-snapshot");
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+
+    public Snapshot current() {
+        Snapshot snapshot = current.get();
+        if (snapshot != null) {
+            return snapshot;
+        }
+        // a cold start under load builds the snapshot once, not once per waiting request
+        return flights.load("catalog", () -> {
+            Snapshot loaded = current.get();
+            return loaded != null ? loaded : rebuild();
+        });
+    }
+
+    public SingleFlightStats flightStats() {
+        return flights.stats();
+    }
+
+    public synchronized Snapshot rebuild() {
+        try {
+            TreeMap<Item, byte[]> entries = new TreeMap<>(ORDER);
+            for (Item item : itemRepo.findAllItem()) {
+                Item copy = detachedCopy(item);
+                entries.put(copy, serialize(copy));
+            }
+            Snapshot previous = current.get();
+            Snapshot snapshot = new Snapshot(previous == null ? 1 : previous.version + 1, generation, entries);
+            current.set(snapshot);
+            listeners.orderedStream().forEach(listener -> listener.onCatalogLoaded(snapshot.items));
+            log.info("Catalog snapshot v{} built with {} items", snapshot.version, entries.size());
+            return snapshot;
+        } catch (DataAccessException accessException) {
+            throw new DatabaseAccessException("Error: " + accessException.getMessage());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onItemChanged(ItemChangedEvent event) {
+        dirty.add(event.getItemNo());
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.snapshot.refresh-interval:PT1S}")
+    public void refreshDirty() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<String> itemNos = new ArrayList<>(dirty);
+        // removed before reading, so a change committed during the read is picked up by the next run
+        dirty.removeAll(itemNos);
+        try {
+            refresh(itemNos);
+        } catch (RuntimeException e) {
+            dirty.addAll(itemNos);
+            log.error("Could not refresh {} catalog items, retrying later", itemNos.size(), e);
+        }
+    }
+
+    public synchronized void refresh(Collection<String> itemNos) {
+        Snapshot previous = current.get();
+        if (previous == null) {
+            // nothing served yet, the first reader will load everything anyway
+            return;
+        }
+        Map<String, Item> fresh = new HashMap<>();
+        for (Item item : itemRepo.findByItemNoIn(itemNos)) {
+            fresh.put(item.getItemNo(), detachedCopy(item));
+        }
+        TreeMap<Item, byte[]> entries = new TreeMap<>(previous.entries);
+        List<Item[]> changes = new ArrayList<>(itemNos.size());
+        for (String itemNo : itemNos) {
+            Item stale = previous.byItemNo.get(itemNo);
+            if (stale != null) {
+                entries.remove(stale);
+            }
+            Item copy = fresh.get(itemNo);
+            if (copy != null) {
+                entries.put(copy, serialize(copy));
+            }
+            changes.add(new Item[]{stale, copy});
+        }
+        current.set(new Snapshot(previous.version + 1, generation, entries));
+        listeners.orderedStream().forEach(listener -> changes.forEach(change -> listener.onItemChanged(change[0], change[1])));
+    }
+
+    private byte[] serialize(Item item) {
+        try {
+            return objectMapper.writeValueAsBytes(item);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize item " + item.getItemNo(), e);
+        }
+    }
+
+    // the snapshot never shares instances with a persistence context, so nothing served here can be flushed back
+    // sizes and colors are stored with escaped quotes by the publish form, strip them once here
+    static Item detachedCopy(Item item) {
+        return Item.builder()
+                .itemId(item.getItemId())
+                .version(item.getVersion())
+                .itemName(item.getItemName())
+                .itemNo(item.getItemNo())
+                .actualPrice(item.getActualPrice())
+                .discountPrice(item.getDiscountPrice())
+                .initialQuantity(item.getInitialQuantity())
+                .currentQuantity(item.getCurrentQuantity())
+                .description(item.getDescription())
+                .ratings(item.getRatings())
+                .imageUrl(item.getImageUrl())
+                .sizes(unquote(item.getSizes()))
+                .colors(unquote(item.getColors()))
+                .datePublished(item.getDatePublished())
+                .category(item.getCategory() == null ? null : List.copyOf(item.getCategory()))
+                .type(item.getType())
+                .build();
+    }
+
+    static List<String> unquote(List<String> values) {
+        if (values == null) {
+            return null;
+        }
+        return values.stream()
+                .map(value -> value.replaceAll("^\"|\"$", ""))
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    public static class Snapshot {
+        @Getter
+        private final long version;
+        @Getter
+        private final String etag;
+        @Getter
+        private final List<Item> items;
+        @Getter
+        private final byte[] body;
+        private final TreeMap<Item, byte[]> entries;
+        @Getter
+        private final Map<String, Item> byItemNo;
+
+        private Snapshot(long version, String generation, TreeMap<Item, byte[]> entries) {
+            this.version = version;
+            this.etag = "\"" + generation + "-" + version + "\"";
+            this.entries = entries;
+            this.items = List.copyOf(entries.keySet());
+
+            Map<String, Item> index = new HashMap<>(entries.size() * 2);
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+            json.write('[');
+            boolean first = true;
+            for (Map.Entry<Item, byte[]> entry : entries.entrySet()) {
+                index.put(entry.getKey().getItemNo(), entry.getKey());
+                if (!first) {
+                    json.write(',');
+                }
+                json.writeBytes(entry.getValue());
+                first = false;
+            }
+            json.write(']');
+            this.byItemNo = Collections.unmodifiableMap(index);
+            this.body = json.toByteArray();
+        }
+
+        public boolean matches(String ifNoneMatch) {
+            return ifNoneMatch != null && (ifNoneMatch.equals(etag) || ifNoneMatch.equals("W/" + etag));
+        }
+    }
+}
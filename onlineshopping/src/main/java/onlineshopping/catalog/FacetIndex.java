@@ -0,0 +1,229 @@
+package onlineshopping.catalog;
+
+import lombok.RequiredArgsConstructor;
+import onlineshopping.entity.Item;
+import onlineshopping.model.FacetSearchResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Bitmap index over category, color, size and type. Every item gets a dense doc id and every facet value a
+ * BitSet of doc ids; values of one facet are OR-ed, different facets are AND-ed, and the facet and
+ * price-bucket counts of the result are collected in a single pass over the matching docs.
+ */
+@Component
+@RequiredArgsConstructor
+public class FacetIndex implements CatalogListener {
+
+    public static final String CATEGORY = "category";
+    public static final String COLOR = "color";
+    public static final String SIZE = "size";
+    public static final String TYPE = "type";
+
+    // upper bounds of the price buckets, the last bucket is open ended
+    private static final double[] PRICE_BOUNDS = {10_000, 25_000, 50_000, 100_000, 250_000};
+
+    private static final Map<String, Function<Item, Collection<String>>> FACETS = Map.of(
+            CATEGORY, Item::getCategory,
+            COLOR, Item::getColors,
+            SIZE, Item::getSizes,
+            TYPE, item -> item.getType() == null ? List.of() : List.of(item.getType())
+    );
+
+    private final CatalogSnapshot catalogSnapshot;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Item> docs = new ArrayList<>();
+    private final Map<String, Integer> docIds = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private final Deque<Integer> freeIds = new ArrayDeque<>();
+    private final Map<String, Map<String, BitSet>> bitmaps = new HashMap<>();
+    private volatile boolean loaded;
+
+    public FacetSearchResponse search(Map<String, List<String>> filters, Double minPrice, Double maxPrice, int pageNumber, int pageSize) {
+        if (!loaded) {
+            catalogSnapshot.current();
+        }
+        lock.readLock().lock();
+        try {
+            BitSet result = (BitSet) live.clone();
+            for (Map.Entry<String, List<String>> filter : filters.entrySet()) {
+                if (filter.getValue() == null || filter.getValue().isEmpty()) {
+                    continue;
+                }
+                Map<String, BitSet> values = bitmaps.getOrDefault(filter.getKey(), Map.of());
+                BitSet any = new BitSet();
+                for (String value : filter.getValue()) {
+                    BitSet bits = values.get(normalize(value));
+                    if (bits != null) {
+                        any.or(bits);
+                    }
+                }
+                result.and(any);
+            }
+
+            Map<String, Map<String, Integer>> facetCounts = new TreeMap<>();
+            FACETS.keySet().forEach(facet -> facetCounts.put(facet, new TreeMap<>()));
+            int[] bucketCounts = new int[PRICE_BOUNDS.length + 1];
+            List<Item> matches = new ArrayList<>();
+
+            for (int doc = result.nextSetBit(0); doc >= 0; doc = result.nextSetBit(doc + 1)) {
+                Item item = docs.get(doc);
+                double price = effectivePrice(item);
+                if ((minPrice != null && price < minPrice) || (maxPrice != null && price > maxPrice)) {
+                    continue;
+                }
+                matches.add(item);
+                bucketCounts[bucket(price)]++;
+                for (Map.Entry<String, Function<Item, Collection<String>>> facet : FACETS.entrySet()) {
+                    for (String value : distinctValues(facet.getValue().apply(item))) {
+                        facetCounts.get(facet.getKey()).merge(value, 1, Integer::sum);
+                    }
+                }
+            }
+
+            matches.sort(Comparator.comparing(Item::getItemName, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)));
+            // in long, a far page number or a huge page size would overflow int and page backwards
+            int from = (int) Math.min((long) pageNumber * pageSize, matches.size());
+            int to = (int) Math.min((long) from + pageSize, matches.size());
+            return new FacetSearchResponse(
+                    new ArrayList<>(matches.subList(from, to)),
+                    matches.size(),
+                    facetCounts,
+                    priceBuckets(bucketCounts)
+            );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onCatalogLoaded(Collection<Item> items) {
+        lock.writeLock().lock();
+        try {
+            docs.clear();
+            docIds.clear();
+            live.clear();
+            freeIds.clear();
+            bitmaps.clear();
+            for (Item item : items) {
+                add(item);
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onItemChanged(Item previous, Item current) {
+        lock.writeLock().lock();
+        try {
+            if (previous != null) {
+                remove(previous);
+            }
+            if (current != null) {
+                add(current);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(Item item) {
+        int doc;
+        if (!freeIds.isEmpty()) {
+            doc = freeIds.pop();
+            docs.set(doc, item);
+        } else {
+            doc = docs.size();
+            docs.add(item);
+        }
+        docIds.put(item.getItemNo(), doc);
+        live.set(doc);
+        for (Map.Entry<String, Function<Item, Collection<String>>> facet : FACETS.entrySet()) {
+            Map<String, BitSet> values = bitmaps.computeIfAbsent(facet.getKey(), key -> new HashMap<>());
+            for (String value : distinctValues(facet.getValue().apply(item))) {
+                values.computeIfAbsent(value, key -> new BitSet()).set(doc);
+            }
+        }
+    }
+
+    private void remove(Item item) {
+        Integer doc = docIds.remove(item.getItemNo());
+        if (doc == null) {
+            return;
+        }
+        live.clear(doc);
+        // only the bitmaps of the values the doc was indexed under, not every value of every facet
+        Item indexed = docs.get(doc);
+        for (Map.Entry<String, Function<Item, Collection<String>>> facet : FACETS.entrySet()) {
+            Map<String, BitSet> values = bitmaps.get(facet.getKey());
+            if (values == null) {
+                continue;
+            }
+            for (String value : distinctValues(facet.getValue().apply(indexed))) {
+                BitSet bits = values.get(value);
+                if (bits != null) {
+                    bits.clear(doc);
+                    if (bits.isEmpty()) {
+                        values.remove(value);
+                    }
+                }
+            }
+        }
+        docs.set(doc, null);
+        freeIds.push(doc);
+    }
+
+    private static Map<String, Integer> priceBuckets(int[] counts) {
+        Map<String, Integer> buckets = new LinkedHashMap<>();
+        double lower = 0;
+        for (int i = 0; i < PRICE_BOUNDS.length; i++) {
+            buckets.put(label(lower) + "-" + label(PRICE_BOUNDS[i]), counts[i]);
+            lower = PRICE_BOUNDS[i];
+        }
+        buckets.put(label(lower) + "+", counts[PRICE_BOUNDS.length]);
+        return buckets;
+    }
+
+    private static int bucket(double price) {
+        for (int i = 0; i < PRICE_BOUNDS.length; i++) {
+            if (price < PRICE_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return PRICE_BOUNDS.length;
+    }
+
+    private static String label(double bound) {
+        return String.valueOf((long) bound);
+    }
+
+    // same rule as checkout: the discount is subtracted from the actual price when present
+    static double effectivePrice(Item item) {
+        return item.getDiscountPrice() > 0 ? item.getActualPrice() - item.getDiscountPrice() : item.getActualPrice();
+    }
+
+    private static Set<String> distinctValues(Collection<String> values) {
+        if (values == null) {
+            return Set.of();
+        }
+        Set<String> distinct = new HashSet<>();
+        for (String value : values) {
+            String normalized = normalize(value);
+            if (!normalized.isEmpty()) {
+                distinct.add(normalized);
+            }
+        }
+        return distinct;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+}
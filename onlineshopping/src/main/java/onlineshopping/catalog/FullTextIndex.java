@@ -0,0 +1,207 @@
+package onlineshopping.catalog;
+
+import lombok.RequiredArgsConstructor;
+import onlineshopping.entity.Item;
+import onlineshopping.model.PageResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over item name, type, category and description ranked with BM25.
+ * Field matches are weighted (name counts more than description) before the BM25 saturation is applied.
+ */
+@Component
+@RequiredArgsConstructor
+public class FullTextIndex implements CatalogListener {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final float NAME_WEIGHT = 3f;
+    private static final float TYPE_WEIGHT = 2f;
+    private static final float CATEGORY_WEIGHT = 2f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "is", "it",
+            "of", "on", "or", "the", "this", "to", "with"
+    );
+
+    private final CatalogSnapshot catalogSnapshot;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Item> docs = new HashMap<>();
+    // term -> item number -> weighted term frequency
+    private final Map<String, Map<String, Float>> postings = new HashMap<>();
+    private final Map<String, Set<String>> docTerms = new HashMap<>();
+    private final Map<String, Float> docLengths = new HashMap<>();
+    private double totalLength;
+    private volatile boolean loaded;
+
+    public PageResponse<Item> search(String queryStr, int pageNumber, int pageSize) {
+        Set<String> terms = new LinkedHashSet<>(analyze(queryStr));
+        if (terms.isEmpty()) {
+            return new PageResponse<>(List.of(), 0, 0);
+        }
+        if (!loaded) {
+            catalogSnapshot.current();
+        }
+
+        lock.readLock().lock();
+        try {
+            int docCount = docs.size();
+            double averageLength = docCount == 0 ? 0 : totalLength / docCount;
+            Map<String, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                Map<String, Float> list = postings.get(term);
+                if (list == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (docCount - list.size() + 0.5) / (list.size() + 0.5));
+                for (Map.Entry<String, Float> posting : list.entrySet()) {
+                    double tf = posting.getValue();
+                    double norm = K1 * (1 - B + B * docLengths.get(posting.getKey()) / averageLength);
+                    scores.merge(posting.getKey(), idf * tf * (K1 + 1) / (tf + norm), Double::sum);
+                }
+            }
+
+            List<Map.Entry<String, Double>> ranked = new ArrayList<>(scores.entrySet());
+            ranked.sort(Map.Entry.<String, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+
+            // in long, a far page number or a huge page size would overflow int and page backwards
+            int from = (int) Math.min((long) pageNumber * pageSize, ranked.size());
+            int to = (int) Math.min((long) from + pageSize, ranked.size());
+            List<Item> page = new ArrayList<>(to - from);
+            for (Map.Entry<String, Double> hit : ranked.subList(from, to)) {
+                page.add(docs.get(hit.getKey()));
+            }
+            int totalPages = (int) ((ranked.size() + (long) pageSize - 1) / pageSize);
+            return new PageResponse<>(page, totalPages, ranked.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onCatalogLoaded(Collection<Item> items) {
+        lock.writeLock().lock();
+        try {
+            docs.clear();
+            postings.clear();
+            docTerms.clear();
+            docLengths.clear();
+            totalLength = 0;
+            for (Item item : items) {
+                add(item);
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onItemChanged(Item previous, Item current) {
+        lock.writeLock().lock();
+        try {
+            if (previous != null) {
+                remove(previous.getItemNo());
+            }
+            if (current != null) {
+                add(current);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(Item item) {
+        Map<String, Float> frequencies = new HashMap<>();
+        count(frequencies, item.getItemName(), NAME_WEIGHT);
+        count(frequencies, item.getType(), TYPE_WEIGHT);
+        if (item.getCategory() != null) {
+            item.getCategory().forEach(category -> count(frequencies, category, CATEGORY_WEIGHT));
+        }
+        count(frequencies, item.getDescription(), DESCRIPTION_WEIGHT);
+
+        float length = 0;
+        for (Map.Entry<String, Float> frequency : frequencies.entrySet()) {
+            postings.computeIfAbsent(frequency.getKey(), key -> new HashMap<>()).put(item.getItemNo(), frequency.getValue());
+            length += frequency.getValue();
+        }
+        docs.put(item.getItemNo(), item);
+        docTerms.put(item.getItemNo(), frequencies.keySet());
+        docLengths.put(item.getItemNo(), length);
+        totalLength += length;
+    }
+
+    private void remove(String itemNo) {
+        if (docs.remove(itemNo) == null) {
+            return;
+        }
+        totalLength -= docLengths.remove(itemNo);
+        for (String term : docTerms.remove(itemNo)) {
+            Map<String, Float> list = postings.get(term);
+            if (list != null && list.remove(itemNo) != null && list.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    private static void count(Map<String, Float> frequencies, String text, float weight) {
+        for (String term : analyze(text)) {
+            frequencies.merge(term, weight, Float::sum);
+        }
+    }
+
+    static List<String> analyze(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> terms = new ArrayList<>();
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty() && !STOP_WORDS.contains(token)) {
+                terms.add(stem(token));
+            }
+        }
+        return terms;
+    }
+
+    // light suffix stripping, enough to fold plurals and common verb forms together
+    static String stem(String term) {
+        if (term.length() <= 3) {
+            return term;
+        }
+        if (term.endsWith("ies") && term.length() > 4) {
+            return term.substring(0, term.length() - 3) + "y";
+        }
+        if (term.endsWith("sses")) {
+            return term.substring(0, term.length() - 2);
+        }
+        if (term.endsWith("ing") && term.length() > 5) {
+            return undouble(term.substring(0, term.length() - 3));
+        }
+        if (term.endsWith("ed") && term.length() > 4) {
+            return undouble(term.substring(0, term.length() - 2));
+        }
+        if (term.endsWith("es") && (term.endsWith("shes") || term.endsWith("ches") || term.endsWith("xes"))) {
+            return term.substring(0, term.length() - 2);
+        }
+        if (term.endsWith("s") && !term.endsWith("ss") && !term.endsWith("us")) {
+            return term.substring(0, term.length() - 1);
+        }
+        return term;
+    }
+
+    // running -> runn -> run, but dress or fill keep their double letter
+    private static String undouble(String stem) {
+        int last = stem.length() - 1;
+        char c = stem.charAt(last);
+        if (last > 0 && c == stem.charAt(last - 1) && "aeiouslz".indexOf(c) < 0) {
+            return stem.substring(0, last);
+        }
+        return stem;
+    }
+}
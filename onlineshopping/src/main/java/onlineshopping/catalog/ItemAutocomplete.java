@@ -0,0 +1,189 @@
+package onlineshopping.catalog;
+
+import lombok.RequiredArgsConstructor;
+import onlineshopping.entity.Item;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Autocomplete over item names for /api/v1/search/item-options.
+ * Prefix matches come from a sorted name map, infix matches from n-gram postings (n = 1..3),
+ * both ranked by popularity (units sold) and cut to a bounded top-k.
+ */
+@Component
+@RequiredArgsConstructor
+public class ItemAutocomplete implements CatalogListener {
+
+    public static final int DEFAULT_LIMIT = 10;
+    public static final int MAX_LIMIT = 50;
+    private static final int GRAM = 3;
+
+    private final CatalogSnapshot catalogSnapshot;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // normalized name -> item numbers sharing it and their units sold
+    private final NavigableMap<String, Map<String, Integer>> names = new TreeMap<>();
+    private final Map<String, Set<String>> postings = new HashMap<>();
+    private volatile boolean loaded;
+
+    public List<String> suggest(String queryStr, int limit) {
+        String query = normalize(queryStr);
+        if (query.isEmpty()) {
+            return List.of();
+        }
+        if (!loaded) {
+            catalogSnapshot.current();
+        }
+        int k = Math.max(1, Math.min(limit, MAX_LIMIT));
+
+        lock.readLock().lock();
+        try {
+            // min-heap of the best k seen so far, worst candidate on top
+            PriorityQueue<Candidate> top = new PriorityQueue<>(k + 1, Candidate.RANK);
+            for (String name : names.subMap(query, true, query + Character.MAX_VALUE, false).keySet()) {
+                offer(top, new Candidate(name, true, popularity(name)), k);
+            }
+            for (String name : infixMatches(query)) {
+                if (!name.startsWith(query)) {
+                    offer(top, new Candidate(name, false, popularity(name)), k);
+                }
+            }
+
+            List<String> result = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                result.add(top.poll().name);
+            }
+            Collections.reverse(result);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onCatalogLoaded(Collection<Item> items) {
+        lock.writeLock().lock();
+        try {
+            names.clear();
+            postings.clear();
+            for (Item item : items) {
+                add(item);
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onItemChanged(Item previous, Item current) {
+        lock.writeLock().lock();
+        try {
+            if (previous != null) {
+                remove(previous);
+            }
+            if (current != null) {
+                add(current);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Collection<String> infixMatches(String query) {
+        if (query.length() <= GRAM) {
+            return postings.getOrDefault(query, Set.of());
+        }
+        // intersect the postings of every trigram, starting from the rarest, then verify
+        List<Set<String>> lists = new ArrayList<>();
+        for (String gram : grams(query, GRAM)) {
+            Set<String> list = postings.get(gram);
+            if (list == null) {
+                return List.of();
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        List<String> matches = new ArrayList<>();
+        for (String name : lists.get(0)) {
+            if (name.contains(query)) {
+                matches.add(name);
+            }
+        }
+        return matches;
+    }
+
+    private void add(Item item) {
+        String name = normalize(item.getItemName());
+        if (name.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> owners = names.computeIfAbsent(name, key -> new HashMap<>());
+        if (owners.isEmpty()) {
+            for (int n = 1; n <= GRAM; n++) {
+                for (String gram : grams(name, n)) {
+                    postings.computeIfAbsent(gram, key -> new HashSet<>()).add(name);
+                }
+            }
+        }
+        owners.put(item.getItemNo(), Math.max(0, item.getInitialQuantity() - item.getCurrentQuantity()));
+    }
+
+    private void remove(Item item) {
+        String name = normalize(item.getItemName());
+        Map<String, Integer> owners = names.get(name);
+        if (owners == null) {
+            return;
+        }
+        owners.remove(item.getItemNo());
+        if (owners.isEmpty()) {
+            names.remove(name);
+            for (int n = 1; n <= GRAM; n++) {
+                for (String gram : grams(name, n)) {
+                    Set<String> list = postings.get(gram);
+                    if (list != null && list.remove(name) && list.isEmpty()) {
+                        postings.remove(gram);
+                    }
+                }
+            }
+        }
+    }
+
+    private int popularity(String name) {
+        int sold = 0;
+        for (int units : names.get(name).values()) {
+            sold += units;
+        }
+        return sold;
+    }
+
+    private static void offer(PriorityQueue<Candidate> top, Candidate candidate, int k) {
+        top.offer(candidate);
+        if (top.size() > k) {
+            top.poll();
+        }
+    }
+
+    private static Set<String> grams(String value, int n) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + n <= value.length(); i++) {
+            grams.add(value.substring(i, i + n));
+        }
+        return grams;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record Candidate(String name, boolean prefix, int popularity) {
+        // ascending = worst first: infix before prefix, fewer sales first, later in the alphabet first
+        static final Comparator<Candidate> RANK = Comparator
+                .comparing(Candidate::prefix)
+                .thenComparingInt(Candidate::popularity)
+                .thenComparing(Candidate::name, Comparator.reverseOrder());
+    }
+}
@@ -0,0 +1,141 @@
+package onlineshopping.catalog;
+
+import onlineshopping.model.CacheStats;
+import onlineshopping.model.ItemDetailView;
+import onlineshopping.model.ItemResponse;
+import onlineshopping.model.SingleFlightStats;
+import onlineshopping.repo.ItemRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded read-through cache of item detail responses keyed by item number, least recently used entries are
+ * evicted past max-size and entries older than the ttl are reloaded. Misses go through the lean
+ * {@link ItemRepo#findItemDetail} projection, so no entity is ever loaded or cached.
+ */
+@Component
+public class ItemCache {
+
+    private final ItemRepo itemRepo;
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final LinkedHashMap<String, Entry> entries;
+    // bumped on every invalidation so a load that raced with it is not cached
+    private final AtomicLong generation = new AtomicLong();
+    private final SingleFlight<String, ItemResponse> flights = new SingleFlight<>("item-by-number");
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public ItemCache(
+            ItemRepo itemRepo,
+            @Value("${catalog.item-cache.max-size:1000}") int maxSize,
+            @Value("${catalog.item-cache.ttl:PT10M}") Duration ttl
+    ) {
+        this.itemRepo = itemRepo;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > ItemCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public ItemResponse get(String itemNo) {
+        if (itemNo == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry entry = entries.get(itemNo);
+            if (entry != null && now - entry.loadedAt < ttlNanos) {
+                hits.increment();
+                return entry.item;
+            }
+        }
+        misses.increment();
+        return flights.load(itemNo, () -> load(itemNo));
+    }
+
+    private ItemResponse load(String itemNo) {
+        long seen = generation.get();
+        ItemResponse found = itemRepo.findItemDetail(itemNo).map(ItemCache::toResponse).orElse(null);
+        loads.increment();
+        synchronized (entries) {
+            if (found == null) {
+                entries.remove(itemNo);
+            } else if (generation.get() == seen) {
+                entries.put(itemNo, new Entry(found, System.nanoTime()));
+            }
+        }
+        return found;
+    }
+
+    private static ItemResponse toResponse(ItemDetailView view) {
+        return ItemResponse.builder()
+                .itemNo(view.getItemNo())
+                .itemName(view.getItemName())
+                .actualPrice(view.getActualPrice())
+                .discountPrice(view.getDiscountPrice())
+                .quantity(view.getQuantity())
+                .description(view.getDescription())
+                .ratings(view.getRatings())
+                .imageUrl(view.getImageUrl())
+                .sizes(CatalogSnapshot.unquote(toList(view.getSizes())))
+                .colors(CatalogSnapshot.unquote(toList(view.getColors())))
+                .categories(toList(view.getCategories()))
+                .type(view.getType())
+                .build();
+    }
+
+    private static List<String> toList(String[] values) {
+        return values == null ? List.of() : List.of(values);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onItemChanged(ItemChangedEvent event) {
+        invalidate(event.getItemNo());
+    }
+
+    public void invalidate(String itemNo) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.remove(itemNo);
+        }
+        flights.forget(itemNo);
+        invalidations.increment();
+    }
+
+    public CacheStats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new CacheStats(hits.sum(), misses.sum(), loads.sum(), evictions.sum(), invalidations.sum(), size, maxSize);
+    }
+
+    public SingleFlightStats flightStats() {
+        return flights.stats();
+    }
+
+    private record Entry(ItemResponse item, long loadedAt) {
+    }
+}
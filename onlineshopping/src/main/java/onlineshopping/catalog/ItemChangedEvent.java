@@ -0,0 +1,17 @@
+package onlineshopping.catalog;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// published whenever an item is created or its stock changes, listeners run after commit
+@Getter
+@AllArgsConstructor
+public class ItemChangedEvent {
+    private final String itemNo;
+    // units a checkout took (negative) or a release put back (positive), null when the item itself was written
+    private final Integer stockDelta;
+
+    public ItemChangedEvent(String itemNo) {
+        this(itemNo, null);
+    }
+}
@@ -0,0 +1,227 @@
+package onlineshopping.checkout;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import onlineshopping.constants.TicketStatus;
+import onlineshopping.exc.ConflictException;
+import onlineshopping.exc.HandleExceptions;
+import onlineshopping.exc.SearchExceptions;
+import onlineshopping.model.CheckoutQueueStats;
+import onlineshopping.model.CheckoutTicketResponse;
+import onlineshopping.model.OrderRequest;
+import onlineshopping.model.OrderResponse;
+import onlineshopping.service.impl.OrderServiceImpl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Async checkout: requests wait in a bounded queue and a small pool of workers drains them in batches, placing
+ * each batch with one transaction through {@link OrderServiceImpl#processOrders}. When a batch cannot be committed
+ * as a whole (a stock row was short, a conflict), its orders are placed one by one instead.
+ * Tickets live in memory on the node that took the request, finished ones are dropped after the ticket ttl.
+ */
+@Slf4j
+@Component
+public class CheckoutQueue {
+
+    private final OrderServiceImpl orderService;
+    private final int capacity;
+    private final int workers;
+    private final int batchSize;
+    private final long ticketTtlNanos;
+
+    private final BlockingQueue<Ticket> queue;
+    private final ConcurrentMap<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public CheckoutQueue(
+            OrderServiceImpl orderService,
+            @Value("${checkout.async.queue-capacity:1000}") int capacity,
+            @Value("${checkout.async.workers:4}") int workers,
+            @Value("${checkout.async.batch-size:20}") int batchSize,
+            @Value("${checkout.async.ticket-ttl:PT1H}") Duration ticketTtl
+    ) {
+        this.orderService = orderService;
+        this.capacity = capacity;
+        this.workers = workers;
+        this.batchSize = Math.max(1, batchSize);
+        this.ticketTtlNanos = ticketTtl.toNanos();
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            Thread thread = new Thread(this::drain, "checkout-worker-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        threads.forEach(Thread::interrupt);
+        List<Ticket> left = new ArrayList<>();
+        queue.drainTo(left);
+        left.forEach(ticket -> ticket.fail("Checkout was interrupted by a shutdown, please try again"));
+    }
+
+    /**
+     * Queues the order, or returns null when the queue is full and the client should come back later.
+     * The idempotency key, when there is one, is written on the order it places.
+     */
+    public CheckoutTicketResponse submit(OrderRequest orderRequest, String idempotencyKey) {
+        // checkout is open to guests, so the ticket id is the only thing guarding the ticket and must not be guessable
+        Ticket ticket = new Ticket(UUID.randomUUID().toString(), orderRequest, idempotencyKey);
+        tickets.put(ticket.id, ticket);
+        if (!queue.offer(ticket)) {
+            tickets.remove(ticket.id);
+            rejected.increment();
+            return null;
+        }
+        accepted.increment();
+        return ticket.toResponse();
+    }
+
+    public CheckoutTicketResponse find(String ticketId) {
+        return ticket(ticketId).toResponse();
+    }
+
+    // completes with the final ticket state, for subscribers that do not want to poll
+    public CompletableFuture<CheckoutTicketResponse> whenDone(String ticketId) {
+        Ticket ticket = ticket(ticketId);
+        return ticket.done.thenApply(response -> ticket.toResponse());
+    }
+
+    public CheckoutQueueStats stats() {
+        return new CheckoutQueueStats(queue.size(), capacity, accepted.sum(), rejected.sum(), batches.sum(),
+                fallbacks.sum(), completed.sum(), failed.sum());
+    }
+
+    @Scheduled(fixedDelayString = "${checkout.async.purge-interval:PT5M}")
+    public void purgeFinished() {
+        long now = System.nanoTime();
+        tickets.values().removeIf(ticket -> ticket.done.isDone() && now - ticket.finishedAt > ticketTtlNanos);
+    }
+
+    private Ticket ticket(String ticketId) {
+        Ticket ticket = ticketId == null ? null : tickets.get(ticketId);
+        if (ticket == null) {
+            throw new SearchExceptions("Oops!!! No checkout ticket matches");
+        }
+        return ticket;
+    }
+
+    private void drain() {
+        List<Ticket> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Ticket first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Checkout worker failed on a batch of {}", batch.size(), e);
+                batch.forEach(ticket -> ticket.fail("An unexpected error occurred."));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(List<Ticket> batch) {
+        batch.forEach(ticket -> ticket.status = TicketStatus.processing);
+        batches.increment();
+
+        List<OrderRequest> requests = new ArrayList<>(batch.size());
+        List<String> idempotencyKeys = new ArrayList<>(batch.size());
+        batch.forEach(ticket -> {
+            requests.add(ticket.request);
+            idempotencyKeys.add(ticket.idempotencyKey);
+        });
+        try {
+            List<OrderResponse> responses = orderService.processOrders(requests, idempotencyKeys);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).finish(responses.get(i));
+            }
+            return;
+        } catch (RuntimeException e) {
+            // nothing of the batch was committed, place its orders one transaction each
+            fallbacks.increment();
+        }
+        for (Ticket ticket : batch) {
+            OrderRequest request = ticket.request;
+            try {
+                String orderNo = orderService.processOrder(request.getEmail(), request.getStreet(), request.getRegion(), request.getCartItems(), ticket.idempotencyKey);
+                ticket.finish(new OrderResponse(orderNo, request.getEmail(), request.getStreet() + " " + request.getRegion(), null, true));
+            } catch (HandleExceptions | SearchExceptions | ConflictException exception) {
+                ticket.fail(exception.getMessage());
+            } catch (RuntimeException exception) {
+                log.error("Async checkout failed for ticket {}", ticket.id, exception);
+                ticket.fail("An unexpected error occurred.");
+            }
+        }
+    }
+
+    private class Ticket {
+        final String id;
+        final OrderRequest request;
+        final String idempotencyKey;
+        final CompletableFuture<OrderResponse> done = new CompletableFuture<>();
+        volatile TicketStatus status = TicketStatus.queued;
+        volatile long finishedAt;
+
+        Ticket(String id, OrderRequest request, String idempotencyKey) {
+            this.id = id;
+            this.request = request;
+            this.idempotencyKey = idempotencyKey;
+        }
+
+        synchronized void finish(OrderResponse response) {
+            if (done.isDone()) {
+                return;
+            }
+            finishedAt = System.nanoTime();
+            status = response.isSuccessful() ? TicketStatus.completed : TicketStatus.failed;
+            (response.isSuccessful() ? completed : failed).increment();
+            done.complete(response);
+        }
+
+        void fail(String message) {
+            OrderResponse response = new OrderResponse();
+            response.setCustomerEmail(request.getEmail());
+            response.setErrorMessage(message);
+            finish(response);
+        }
+
+        CheckoutTicketResponse toResponse() {
+            return new CheckoutTicketResponse(id, status, done.getNow(null));
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package onlineshopping.constants;
+
+public enum AudienceMetric {
+    daily_buyers,
+    monthly_buyers,
+    item_viewers
+}
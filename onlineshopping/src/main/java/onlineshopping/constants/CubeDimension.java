@@ -0,0 +1,8 @@
+package onlineshopping.constants;
+
+public enum CubeDimension {
+    all,
+    category,
+    type,
+    payment
+}
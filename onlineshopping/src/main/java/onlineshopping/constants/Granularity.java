@@ -0,0 +1,32 @@
+package onlineshopping.constants;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+
+public enum Granularity {
+    hour,
+    day,
+    week,
+    month;
+
+    // start of the bucket the time falls in, weeks start on Monday like date_trunc('week')
+    public LocalDateTime truncate(LocalDateTime time) {
+        return switch (this) {
+            case hour -> time.truncatedTo(ChronoUnit.HOURS);
+            case day -> time.truncatedTo(ChronoUnit.DAYS);
+            case week -> time.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case month -> time.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+        };
+    }
+
+    public LocalDateTime next(LocalDateTime bucketStart) {
+        return switch (this) {
+            case hour -> bucketStart.plusHours(1);
+            case day -> bucketStart.plusDays(1);
+            case week -> bucketStart.plusWeeks(1);
+            case month -> bucketStart.plusMonths(1);
+        };
+    }
+}
@@ -0,0 +1,7 @@
+package onlineshopping.constants;
+
+public enum HoldStatus {
+    held,
+    confirmed,
+    released
+}
@@ -0,0 +1,6 @@
+package onlineshopping.constants;
+
+public enum RefundStatus {
+    pending,
+    refunded
+}
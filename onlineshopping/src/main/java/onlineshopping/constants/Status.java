@@ -1,10 +1,28 @@
 package onlineshopping.constants;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public enum Status {
     completed,
     ongoing,
     canceled,
     processing,
     shipped,
-    delivered
+    delivered;
+
+    // the statuses an order can move to from this one, completed and canceled are final
+    public Set<Status> next() {
+        return switch (this) {
+            case ongoing -> EnumSet.of(processing, completed, canceled);
+            case processing -> EnumSet.of(shipped, canceled);
+            case shipped -> EnumSet.of(delivered);
+            case delivered -> EnumSet.of(completed);
+            case completed, canceled -> EnumSet.noneOf(Status.class);
+        };
+    }
+
+    public boolean canMoveTo(Status target) {
+        return next().contains(target);
+    }
 }
@@ -0,0 +1,8 @@
+package onlineshopping.constants;
+
+public enum TicketStatus {
+    queued,
+    processing,
+    completed,
+    failed
+}
@@ -1,19 +1,48 @@
 package onlineshopping.contoller;
 
 import lombok.RequiredArgsConstructor;
+import onlineshopping.audience.AudienceCounter;
+import onlineshopping.checkout.CheckoutQueue;
+import onlineshopping.dashboard.AdminDashboard;
+import onlineshopping.entity.OrderStatusEvent;
+import onlineshopping.entity.SalesCubeCell;
 import onlineshopping.exc.DatabaseAccessException;
 import onlineshopping.exc.HandleExceptions;
+import onlineshopping.history.OrderStatusLog;
+import onlineshopping.inventory.StockHolds;
+import onlineshopping.model.AudienceResponse;
+import onlineshopping.model.BulkOrderStatusRequest;
+import onlineshopping.model.CacheStats;
+import onlineshopping.model.CheckoutQueueStats;
+import onlineshopping.model.CursorPageResponse;
+import onlineshopping.model.DashboardResponse;
+import onlineshopping.model.DistinctCount;
+import onlineshopping.model.InventoryStats;
+import onlineshopping.model.OrderStatusResult;
 import onlineshopping.model.PageResponse;
+import onlineshopping.model.RetryStats;
 import onlineshopping.model.SalesPerMonthDTO;
+import onlineshopping.model.SingleFlightStats;
+import onlineshopping.model.StockHoldStats;
+import onlineshopping.pay.PaymentFacade;
+import onlineshopping.pay.entity.Refund;
+import onlineshopping.sales.SalesCube;
+import onlineshopping.service.impl.ExportServiceImpl;
+import onlineshopping.service.impl.OrderServiceImpl;
 import onlineshopping.service.impl.SearchServiceImpl;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @CrossOrigin()
@@ -22,7 +51,18 @@ import java.util.List;
 @RequiredArgsConstructor
 public class AdminController {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final SearchServiceImpl searchService;
+    private final ExportServiceImpl exportService;
+    private final OrderServiceImpl orderService;
+    private final CheckoutQueue checkoutQueue;
+    private final StockHolds stockHolds;
+    private final PaymentFacade paymentFacade;
+    private final OrderStatusLog statusLog;
+    private final SalesCube salesCube;
+    private final AdminDashboard dashboard;
+    private final AudienceCounter audienceCounter;
 
     @CrossOrigin()
     @GetMapping("/all-users")
@@ -102,6 +142,101 @@ public class AdminController {
         }
     }
 
+    // keyset variants of the listings above: pass back nextCursor to get the following page
+    @CrossOrigin()
+    @GetMapping("/all-users/cursor")
+    public ResponseEntity<CursorPageResponse<Object[]>> findAllUsers(
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "pageSize", defaultValue = "10") int pageSize,
+            @RequestParam(name = "withTotal", defaultValue = "false") boolean withTotal
+    ){
+        checkPageSize(pageSize);
+        return ResponseEntity.ok(searchService.findAllUsers(cursor, pageSize, withTotal));
+    }
+
+    @CrossOrigin()
+    @GetMapping("/all-orders/cursor")
+    public ResponseEntity<CursorPageResponse<Object[]>> findOrders(
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "pageSize", defaultValue = "10") int pageSize,
+            @RequestParam(name = "withTotal", defaultValue = "false") boolean withTotal
+    ){
+        checkPageSize(pageSize);
+        return ResponseEntity.ok(searchService.findOrders(cursor, pageSize, withTotal));
+    }
+
+    @CrossOrigin()
+    @GetMapping("/latest-orders/cursor")
+    public ResponseEntity<CursorPageResponse<Object[]>> findLatestOrders(
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "pageSize", defaultValue = "3") int pageSize,
+            @RequestParam(name = "withTotal", defaultValue = "false") boolean withTotal
+    ){
+        checkPageSize(pageSize);
+        return ResponseEntity.ok(searchService.findLatestOrders(cursor, pageSize, withTotal));
+    }
+
+    @CrossOrigin()
+    @GetMapping("/product/cursor")
+    public ResponseEntity<CursorPageResponse<Object[]>> findProducts(
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "pageSize", defaultValue = "10") int pageSize,
+            @RequestParam(name = "withTotal", defaultValue = "false") boolean withTotal
+    ){
+        checkPageSize(pageSize);
+        return ResponseEntity.ok(searchService.findProducts(cursor, pageSize, withTotal));
+    }
+
+    // full exports streamed straight from a database cursor, format is csv or ndjson
+    @CrossOrigin()
+    @GetMapping("/export/orders")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam(name = "format", defaultValue = "csv") String format
+    ){
+        ExportServiceImpl.checkFormat(format);
+        return exportResponse("orders", format, out -> exportService.exportOrders(out, format));
+    }
+
+    @CrossOrigin()
+    @GetMapping("/export/users")
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @RequestParam(name = "format", defaultValue = "csv") String format
+    ){
+        ExportServiceImpl.checkFormat(format);
+        return exportResponse("users", format, out -> exportService.exportUsers(out, format));
+    }
+
+    @CrossOrigin()
+    @GetMapping("/export/products")
+    public ResponseEntity<StreamingResponseBody> exportProducts(
+            @RequestParam(name = "format", defaultValue = "csv") String format
+    ){
+        ExportServiceImpl.checkFormat(format);
+        return exportResponse("products", format, out -> exportService.exportProducts(out, format));
+    }
+
+    private static ResponseEntity<StreamingResponseBody> exportResponse(String name, String format, StreamingResponseBody body) {
+        MediaType type = ExportServiceImpl.NDJSON.equals(format)
+                ? MediaType.parseMediaType("application/x-ndjson")
+                : MediaType.parseMediaType("text/csv");
+        return ResponseEntity.ok()
+                .contentType(type)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + name + "." + format + "\"")
+                .body(body);
+    }
+
+    // every panel of the dashboard in one round trip, panels that time out or fail are listed in errors
+    @CrossOrigin()
+    @GetMapping("/dashboard")
+    public ResponseEntity<DashboardResponse> findDashboard(
+            @RequestParam(name = "latestOrders", defaultValue = "3") int latestOrders,
+            @RequestParam(name = "products", defaultValue = "10") int products
+    ){
+        checkPageSize(latestOrders);
+        checkPageSize(products);
+        return ResponseEntity.ok(dashboard.load(latestOrders, products));
+    }
+
     @CrossOrigin()
     @GetMapping("/total-sales")
     public ResponseEntity<Integer> findTotalSales() {
@@ -134,7 +269,7 @@ public class AdminController {
                 throw new HandleExceptions("Invalid page number or size");
             }
 
-            Pageable pageable = PageRequest.of(pageNumber,pageSize,Sort.by(""));
+            Pageable pageable = PageRequest.of(pageNumber,pageSize);
             Page<Object[]> products = searchService.findProducts(pageable);
 
             PageResponse<Object[]> pageResponse = new PageResponse<>(
@@ -155,6 +290,90 @@ public class AdminController {
         return ResponseEntity.ok(salesPerMonthList);
     }
 
+    @CrossOrigin()
+    @GetMapping("/sales-cube")
+    public ResponseEntity<List<SalesCubeCell>> findSalesCube(
+            @RequestParam(name = "granularity", defaultValue = "day") String granularity,
+            @RequestParam(name = "dimension", defaultValue = "all") String dimension,
+            @RequestParam(name = "value", required = false) String value,
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to
+    ){
+        return ResponseEntity.ok(salesCube.series(granularity, dimension, value, from, to));
+    }
+
+    @CrossOrigin()
+    @PostMapping("/sales-cube/rebuild")
+    public ResponseEntity<String> rebuildSalesCube(){
+        salesCube.rebuild();
+        return ResponseEntity.ok("Sales cube rebuilt");
+    }
+
+    // approximate distinct counts, each with the margin the true count stays within about 95% of the time
+    @CrossOrigin()
+    @GetMapping("/audience/buyers")
+    public ResponseEntity<AudienceResponse> findDistinctBuyers(
+            @RequestParam(name = "days", defaultValue = "30") int days,
+            @RequestParam(name = "months", defaultValue = "12") int months
+    ){
+        return ResponseEntity.ok(audienceCounter.buyers(days, months));
+    }
+
+    @CrossOrigin()
+    @GetMapping("/audience/items/{itemNo}/viewers")
+    public ResponseEntity<DistinctCount> findDistinctViewers(@PathVariable("itemNo") String itemNo){
+        return ResponseEntity.ok(audienceCounter.viewers(itemNo));
+    }
+
+    @CrossOrigin()
+    @GetMapping("/item-cache/stats")
+    public ResponseEntity<CacheStats> findItemCacheStats() {
+        return ResponseEntity.ok(searchService.getItemCacheStats());
+    }
+
+    @CrossOrigin()
+    @GetMapping("/single-flight/stats")
+    public ResponseEntity<List<SingleFlightStats>> findSingleFlightStats() {
+        return ResponseEntity.ok(searchService.getSingleFlightStats());
+    }
+
+    @CrossOrigin()
+    @GetMapping("/inventory/stats")
+    public ResponseEntity<InventoryStats> findInventoryStats() {
+        return ResponseEntity.ok(orderService.getInventoryStats());
+    }
+
+    @CrossOrigin()
+    @GetMapping("/refunds/pending")
+    public ResponseEntity<List<Refund>> findPendingRefunds() {
+        return ResponseEntity.ok(paymentFacade.pendingRefunds());
+    }
+
+    @CrossOrigin()
+    @PostMapping("/refunds/{refundId}/refunded")
+    public ResponseEntity<String> markRefunded(@PathVariable("refundId") Long refundId) {
+        paymentFacade.markRefunded(refundId);
+        return ResponseEntity.ok("Refund marked as paid back");
+    }
+
+    @CrossOrigin()
+    @GetMapping("/stock-holds/stats")
+    public ResponseEntity<StockHoldStats> findStockHoldStats() {
+        return ResponseEntity.ok(stockHolds.stats());
+    }
+
+    @CrossOrigin()
+    @GetMapping("/retry/stats")
+    public ResponseEntity<List<RetryStats>> findRetryStats() {
+        return ResponseEntity.ok(searchService.getRetryStats());
+    }
+
+    @CrossOrigin()
+    @GetMapping("/checkout-queue/stats")
+    public ResponseEntity<CheckoutQueueStats> findCheckoutQueueStats() {
+        return ResponseEntity.ok(checkoutQueue.stats());
+    }
+
     @CrossOrigin()
     @PostMapping("/confirm-order")
     public ResponseEntity<String> processOrderStatus(
@@ -163,6 +382,23 @@ public class AdminController {
     ){
         return searchService.processOrderStatus(orderNo,orderStatus);
     }
+
+    @CrossOrigin()
+    @GetMapping("/orders/{orderNo}/status-history")
+    public ResponseEntity<List<OrderStatusEvent>> findStatusHistory(@PathVariable("orderNo") String orderNo){
+        return ResponseEntity.ok(statusLog.timeline(orderNo));
+    }
+
+    @CrossOrigin()
+    @PostMapping("/orders/status")
+    public ResponseEntity<List<OrderStatusResult>> processOrderStatuses(@RequestBody BulkOrderStatusRequest request){
+        return ResponseEntity.ok(searchService.processOrderStatuses(request.getOrderNos(), request.getStatus()));
+    }
+
+    // the cursor queries fetch one row more than the page, an unbounded size would read whole tables
+    private static void checkPageSize(int pageSize) {
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE){
+            throw new HandleExceptions("The page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+    }
 }
-//payment details: customer name, payment schedule, Bill number, Amount paid, balance amount, date
-//sales for month
\ No newline at end of file
@@ -1,14 +1,28 @@
 package onlineshopping.contoller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import onlineshopping.audience.AudienceCounter;
+import onlineshopping.catalog.CatalogSnapshot;
+import onlineshopping.catalog.FacetIndex;
 import onlineshopping.entity.Item;
+import onlineshopping.exc.HandleExceptions;
 import onlineshopping.exc.SearchExceptions;
+import onlineshopping.model.BestSellersResponse;
+import onlineshopping.model.FacetSearchResponse;
+import onlineshopping.model.PageResponse;
 import onlineshopping.model.ItemResponse;
+import onlineshopping.sales.BestSellers;
 import onlineshopping.service.impl.SearchServiceImpl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @CrossOrigin()
 @RestController
@@ -17,12 +31,18 @@ import java.util.List;
 public class SearchController {
 
     private final SearchServiceImpl searchService;
+    private final CatalogSnapshot catalogSnapshot;
+    private final BestSellers bestSellers;
+    private final AudienceCounter audienceCounter;
 
     // auto-completion drop-down bypassing query parameter
     @CrossOrigin()
     @GetMapping("/item-options")
-    public ResponseEntity<List<String>> itemProducts(@RequestParam String queryStr){
-        List<String> itemOptions = searchService.findItemNames(queryStr);
+    public ResponseEntity<List<String>> itemProducts(
+            @RequestParam String queryStr,
+            @RequestParam(name = "limit", defaultValue = "10") int limit
+    ){
+        List<String> itemOptions = searchService.findItemNames(queryStr, limit);
         if (itemOptions != null) {
             return ResponseEntity.ok(itemOptions);
         }else {
@@ -32,37 +52,81 @@ public class SearchController {
 
 
     // querying all items without passing any parameter, just automatically after the system loaded
+    // served pre-serialized from the catalog snapshot, unchanged catalogs answer 304 on a matching ETag
     @CrossOrigin()
     @GetMapping("/items")
-    public ResponseEntity<List<Item>> findAllItems(){
-        List<Item> items = searchService.findFoundItems();
-        return ResponseEntity.ok(items);
+    public ResponseEntity<byte[]> findAllItems(
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ){
+        CatalogSnapshot.Snapshot snapshot = catalogSnapshot.current();
+        if (snapshot.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(snapshot.getEtag()).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(snapshot.getEtag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.getBody());
+    }
+
+    // ranked full-text search over name, type, category and description
+    @CrossOrigin()
+    @GetMapping("/products")
+    public ResponseEntity<PageResponse<Item>> searchItems(
+            @RequestParam String queryStr,
+            @RequestParam(name = "pageNumber", defaultValue = "0") int pageNumber,
+            @RequestParam(name = "pageSize", defaultValue = "20") int pageSize
+    ){
+        if (pageNumber < 0 || pageSize <= 0){
+            throw new HandleExceptions("Invalid page number or size");
+        }
+        return ResponseEntity.ok(searchService.searchItems(queryStr, pageNumber, pageSize));
+    }
+
+    // faceted filtering: values of one facet are OR-ed, different facets are AND-ed
+    @CrossOrigin()
+    @GetMapping("/facets")
+    public ResponseEntity<FacetSearchResponse> findFacetedItems(
+            @RequestParam(name = "category", required = false) List<String> categories,
+            @RequestParam(name = "color", required = false) List<String> colors,
+            @RequestParam(name = "size", required = false) List<String> sizes,
+            @RequestParam(name = "type", required = false) List<String> types,
+            @RequestParam(name = "minPrice", required = false) Double minPrice,
+            @RequestParam(name = "maxPrice", required = false) Double maxPrice,
+            @RequestParam(name = "pageNumber", defaultValue = "0") int pageNumber,
+            @RequestParam(name = "pageSize", defaultValue = "20") int pageSize
+    ){
+        if (pageNumber < 0 || pageSize <= 0){
+            throw new HandleExceptions("Invalid page number or size");
+        }
+        Map<String, List<String>> filters = new HashMap<>();
+        filters.put(FacetIndex.CATEGORY, categories);
+        filters.put(FacetIndex.COLOR, colors);
+        filters.put(FacetIndex.SIZE, sizes);
+        filters.put(FacetIndex.TYPE, types);
+        return ResponseEntity.ok(searchService.findFacetedItems(filters, minPrice, maxPrice, pageNumber, pageSize));
+    }
+
+    // top items by units sold, over the whole catalog or within one category
+    @CrossOrigin()
+    @GetMapping("/best-sellers")
+    public ResponseEntity<BestSellersResponse> findBestSellers(
+            @RequestParam(name = "category", required = false) String category,
+            @RequestParam(name = "limit", defaultValue = "10") int limit
+    ){
+        return ResponseEntity.ok(bestSellers.top(category, limit));
     }
 
     //querying specific item, with passed item number as a parameter
     @CrossOrigin()
     @GetMapping("/item-product")
-    public ResponseEntity<ItemResponse> findItem(@RequestParam String queryStr){
-        Item queryItem = searchService.findUniqueItem(queryStr);
-            if (queryItem != null){
-                ItemResponse itemResponse = ItemResponse.builder()
-                        .itemNo(queryItem.getItemNo())
-                        .itemName(queryItem.getItemName())
-                        .actualPrice(queryItem.getActualPrice())
-                        .discountPrice(queryItem.getDiscountPrice())
-                        .quantity(queryItem.getInitialQuantity())
-                        .description(queryItem.getDescription())
-                        .ratings(queryItem.getRatings())
-                        .imageUrl(queryItem.getImageUrl())
-                        .sizes(queryItem.getSizes())
-                        .colors(queryItem.getColors())
-                        .categories(queryItem.getCategory())
-                        .type(queryItem.getType())
-                        .build();
-                return ResponseEntity.ok(itemResponse);
-            }else {
-                throw new SearchExceptions("No item found matching your search query.");
-            }
+    public ResponseEntity<ItemResponse> findItem(@RequestParam String queryStr, HttpServletRequest request){
+        ItemResponse itemResponse = searchService.findItemDetail(queryStr);
+        if (itemResponse != null){
+            audienceCounter.viewed(queryStr, viewer(request));
+            return ResponseEntity.ok(itemResponse);
+        }else {
+            throw new SearchExceptions("No item found matching your search query.");
+        }
     }
 
     //querying image by passing image name
@@ -71,5 +135,13 @@ public class SearchController {
     public ResponseEntity<String> getImage(@PathVariable String imageName){
         return searchService.getImagePath(imageName);
     }
-}
 
+    // signed-in viewers count once whatever their address, guests by the client address, which the container only
+    // takes from X-Forwarded-For when a trusted proxy sent it (server.forward-headers-strategy)
+    private static String viewer(HttpServletRequest request){
+        if (request.getUserPrincipal() != null){
+            return "user:" + request.getUserPrincipal().getName();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
@@ -1,17 +1,29 @@
 package onlineshopping.contoller;
 
 import lombok.RequiredArgsConstructor;
+import onlineshopping.checkout.CheckoutQueue;
+import onlineshopping.constants.TicketStatus;
+import onlineshopping.exc.ConflictException;
+import onlineshopping.exc.HandleExceptions;
+import onlineshopping.exc.SearchExceptions;
+import onlineshopping.idempotency.IdempotencyStore;
 import onlineshopping.model.*;
 import onlineshopping.pay.PaymentFacade;
 import onlineshopping.service.impl.AuthService;
 import onlineshopping.service.impl.OrderServiceImpl;
 import onlineshopping.service.impl.SearchServiceImpl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.net.URI;
 import java.util.List;
+import java.util.function.Function;
 
 
 @CrossOrigin()
@@ -24,47 +36,122 @@ public class UserController {
     private final PaymentFacade paymentFacade;
     private final AuthService authService;
     private final SearchServiceImpl searchService;
+    private final IdempotencyStore idempotencyStore;
+    private final CheckoutQueue checkoutQueue;
+
+    private static final long TICKET_SUBSCRIPTION_TIMEOUT = 60_000;
 
     @CrossOrigin()
     @PostMapping("/cart/checkout")
-    public ResponseEntity<OrderResponse> placeOrder(@RequestBody OrderRequest orderRequest) {
-        OrderResponse response = new OrderResponse();
+    public ResponseEntity<OrderResponse> placeOrder(
+            @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @RequestBody OrderRequest orderRequest
+    ) {
+        // a retried request with the same key gets the first response back instead of a second order, the key
+        // goes on the order itself so a retry also finds an order whose response was never remembered
+        return idempotencyStore.execute("checkout", idempotencyKey, orderRequest, OrderResponse.class,
+                key -> checkout(orderRequest, key),
+                key -> orderService.findOrderNo(key).map(orderNo -> ResponseEntity.ok(placed(orderRequest, orderNo))).orElse(null));
+    }
 
-        if (orderRequest.getEmail().isEmpty() || orderRequest.getStreet().isEmpty() || orderRequest.getRegion().isEmpty()) {
-            response.setErrorMessage("Please fill in all address fields!");
-            return ResponseEntity.badRequest().body(response);
-        } else if (orderRequest.getCartItems() == null || orderRequest.getCartItems().isEmpty()) {
-            response.setErrorMessage("Cart is empty!");
-            return ResponseEntity.badRequest().body(response);
+    // async mode: the cart is checked and queued, the order is placed by the checkout workers
+    @CrossOrigin()
+    @PostMapping(path = "/cart/checkout", params = "async=true")
+    public ResponseEntity<CheckoutTicketResponse> placeOrderAsync(
+            @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @RequestBody OrderRequest orderRequest
+    ) {
+        String invalid = validateCheckout(orderRequest);
+        if (invalid != null) {
+            throw new HandleExceptions(invalid);
         }
+        // a placed order answers a retry with a completed ticket, also once the ticket itself is gone
+        Function<String, ResponseEntity<CheckoutTicketResponse>> committed = key -> orderService.findOrderNo(key)
+                .map(orderNo -> ResponseEntity.ok(new CheckoutTicketResponse(null, TicketStatus.completed, placed(orderRequest, orderNo))))
+                .orElse(null);
+        ResponseEntity<CheckoutTicketResponse> response = idempotencyStore.execute("checkout-async", idempotencyKey,
+                orderRequest, CheckoutTicketResponse.class, key -> {
+            CheckoutTicketResponse ticket = checkoutQueue.submit(orderRequest, key);
+            if (ticket == null) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+            }
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/v1/user/cart/checkout/tickets/" + ticket.getTicketId()))
+                    .body(ticket);
+        }, committed);
+        // the 202 stands for the key until the ticket ends, then the final ticket replaces it, or a failed ticket
+        // releases the key so the client can retry with it as the ticket tells
+        if (response.getStatusCode().isSameCodeAs(HttpStatus.ACCEPTED)
+                && !response.getHeaders().containsKey(IdempotencyStore.REPLAYED_HEADER) && response.getBody() != null) {
+            checkoutQueue.whenDone(response.getBody().getTicketId()).thenAccept(ticket -> idempotencyStore.settle(
+                    "checkout-async", idempotencyKey,
+                    ticket.getStatus() == TicketStatus.completed ? ResponseEntity.ok(ticket) : null, committed));
+        }
+        return response;
+    }
 
-        for (CartItem item : orderRequest.getCartItems()) {
+    @CrossOrigin()
+    @GetMapping("/cart/checkout/tickets/{ticketId}")
+    public ResponseEntity<CheckoutTicketResponse> findCheckoutTicket(@PathVariable("ticketId") String ticketId) {
+        return ResponseEntity.ok(checkoutQueue.find(ticketId));
+    }
+
+    // server-sent events: one "ticket" event once the order is placed or rejected, then the stream closes
+    @CrossOrigin()
+    @GetMapping(path = "/cart/checkout/tickets/{ticketId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeCheckoutTicket(@PathVariable("ticketId") String ticketId) {
+        SseEmitter emitter = new SseEmitter(TICKET_SUBSCRIPTION_TIMEOUT);
+        checkoutQueue.whenDone(ticketId).whenComplete((ticket, error) -> {
             try {
-                ResponseEntity<String> result = orderService.processOrder(orderRequest.getEmail(), orderRequest.getStreet(), orderRequest.getRegion(), item);
-                if (result.getStatusCode().is2xxSuccessful()) {
-                    String successMessage = result.getBody();
-                    response.setSuccessful(true);
-                    response.setOrderNo(successMessage);
-                    response.setCustomerEmail(orderRequest.getEmail());
-                    response.setBilling_address(orderRequest.getStreet() + " " + orderRequest.getRegion());
-                } else {
-                    response.setSuccessful(false);
-                    String itemErrorMessage = String.format("Failed to process item %s: %s", item.getItemNo(), result.getBody());
-                    response.setErrorMessage((response.getErrorMessage() == null ? "" : response.getErrorMessage() + "\n") + itemErrorMessage);
-                }
-            } catch (Exception e) {
-                response.setSuccessful(false);
-                String itemErrorMessage = String.format("Failed to process item %s: An unexpected error occurred.", item.getItemNo());
-                response.setErrorMessage((response.getErrorMessage() == null ? "" : response.getErrorMessage() + "\n") + itemErrorMessage);
+                emitter.send(SseEmitter.event().name("ticket").data(ticket));
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
             }
+        });
+        return emitter;
+    }
+
+    private ResponseEntity<OrderResponse> checkout(OrderRequest orderRequest, String idempotencyKey) {
+        OrderResponse response = new OrderResponse();
+
+        String invalid = validateCheckout(orderRequest);
+        if (invalid != null) {
+            response.setErrorMessage(invalid);
+            return ResponseEntity.badRequest().body(response);
         }
 
-        response.setSuccessful(response.getErrorMessage() == null);
-        if (response.isSuccessful()) {
-            return ResponseEntity.ok(response);
-        } else {
+        try {
+            String orderNo = orderService.processOrder(orderRequest.getEmail(), orderRequest.getStreet(), orderRequest.getRegion(), orderRequest.getCartItems(), idempotencyKey);
+            return ResponseEntity.ok(placed(orderRequest, orderNo));
+        } catch (HandleExceptions | SearchExceptions exception) {
+            response.setErrorMessage(exception.getMessage());
             return ResponseEntity.badRequest().body(response);
+        } catch (ConflictException exception) {
+            response.setErrorMessage(exception.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        } catch (Exception exception) {
+            response.setErrorMessage("An unexpected error occurred.");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    private static OrderResponse placed(OrderRequest orderRequest, String orderNo) {
+        return new OrderResponse(orderNo, orderRequest.getEmail(), orderRequest.getStreet() + " " + orderRequest.getRegion(), null, true);
+    }
+
+    private static String validateCheckout(OrderRequest orderRequest) {
+        if (orderRequest.getEmail().isEmpty() || orderRequest.getStreet().isEmpty() || orderRequest.getRegion().isEmpty()) {
+            return "Please fill in all address fields!";
+        } else if (orderRequest.getCartItems() == null || orderRequest.getCartItems().isEmpty()) {
+            return "Cart is empty!";
+        }
+        for (CartItem cartItem : orderRequest.getCartItems()) {
+            if (cartItem.getProductQuantity() <= 0) {
+                return "Invalid quantity for item number: " + cartItem.getItemNo();
+            }
         }
+        return null;
     }
 
     @CrossOrigin()
@@ -89,9 +176,12 @@ public class UserController {
 
     @CrossOrigin()
     @PostMapping("/payments")
-    public ResponseEntity<PaymentResponse> makePayment(@RequestBody PaymentRequest paymentRequest)
-    {
-       return ResponseEntity.ok(paymentFacade.pay(paymentRequest));
+    public ResponseEntity<PaymentResponse> makePayment(
+            @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @RequestBody PaymentRequest paymentRequest
+    ) {
+       return idempotencyStore.execute("payment", idempotencyKey, paymentRequest, PaymentResponse.class,
+               () -> ResponseEntity.ok(paymentFacade.pay(paymentRequest)));
     }
 
 
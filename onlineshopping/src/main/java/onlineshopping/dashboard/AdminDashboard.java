@@ -0,0 +1,113 @@
+package onlineshopping.dashboard;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import onlineshopping.audience.AudienceCounter;
+import onlineshopping.model.DashboardResponse;
+import onlineshopping.service.impl.SearchServiceImpl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Every panel of the admin dashboard in one response. Panels are computed concurrently on a small bounded pool and
+ * each one gets the panel timeout from the moment the request fans out, so the response takes as long as the
+ * slowest panel, capped by the timeout. A panel that times out, fails or finds the pool full is left out and named
+ * in the errors, the others are still returned.
+ */
+@Slf4j
+@Component
+public class AdminDashboard {
+
+    private static final String TOTAL_SALES = "totalSales";
+    private static final String TOTAL_ORDERS = "totalOrders";
+    private static final String TOTAL_ORDERED_PRODUCTS = "totalOrderedProducts";
+    private static final String LATEST_ORDERS = "latestOrders";
+    private static final String SALES_PER_MONTH = "salesPerMonth";
+    private static final String PRODUCTS = "products";
+    private static final String DISTINCT_BUYERS = "distinctBuyers";
+
+    private final SearchServiceImpl searchService;
+    private final AudienceCounter audienceCounter;
+    private final long panelTimeoutNanos;
+    private final ThreadPoolExecutor executor;
+
+    public AdminDashboard(
+            SearchServiceImpl searchService,
+            AudienceCounter audienceCounter,
+            @Value("${admin.dashboard.threads:6}") int threads,
+            @Value("${admin.dashboard.queue-capacity:60}") int queueCapacity,
+            @Value("${admin.dashboard.panel-timeout:PT2S}") Duration panelTimeout
+    ) {
+        this.searchService = searchService;
+        this.audienceCounter = audienceCounter;
+        this.panelTimeoutNanos = panelTimeout.toNanos();
+        AtomicInteger count = new AtomicInteger();
+        // a full queue rejects the panel instead of running it on the request thread, where no timeout could stop it
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "admin-dashboard-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public DashboardResponse load(int latestOrders, int products) {
+        Map<String, Callable<Object>> panels = new LinkedHashMap<>();
+        panels.put(TOTAL_SALES, searchService::findTotalSales);
+        panels.put(TOTAL_ORDERS, searchService::findTotalOrders);
+        panels.put(TOTAL_ORDERED_PRODUCTS, searchService::findTotalProduct);
+        // first pages of the keyset listings, the panels show no page count so no count(*) runs
+        panels.put(LATEST_ORDERS, () -> searchService.findLatestOrders(null, latestOrders, false));
+        panels.put(SALES_PER_MONTH, searchService::getSalesPerMonth);
+        panels.put(PRODUCTS, () -> searchService.findProducts(null, products, false));
+        // today and this month
+        panels.put(DISTINCT_BUYERS, () -> audienceCounter.buyers(1, 1));
+
+        Map<String, String> errors = new LinkedHashMap<>();
+        Map<String, Future<Object>> futures = new LinkedHashMap<>();
+        long deadline = System.nanoTime() + panelTimeoutNanos;
+        panels.forEach((name, panel) -> {
+            try {
+                futures.put(name, executor.submit(panel));
+            } catch (RejectedExecutionException e) {
+                errors.put(name, "The dashboard is busy, try again shortly");
+            }
+        });
+
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<Object>> future : futures.entrySet()) {
+            String name = future.getKey();
+            try {
+                values.put(name, future.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.getValue().cancel(true);
+                errors.put(name, "Timed out after " + Duration.ofNanos(panelTimeoutNanos).toMillis() + " ms");
+            } catch (ExecutionException e) {
+                log.warn("Dashboard panel {} failed", name, e.getCause());
+                errors.put(name, "Could not be loaded");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(pending -> pending.cancel(true));
+                errors.put(name, "Interrupted");
+                break;
+            }
+        }
+        panels.keySet().forEach(name -> {
+            if (!values.containsKey(name)) {
+                errors.putIfAbsent(name, "Interrupted");
+            }
+        });
+        return new DashboardResponse(values, errors, errors.isEmpty());
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,42 @@
+package onlineshopping.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// a serialized HyperLogLog per metric and key (a day, a month, an item number), merged into on every flush
+@Entity
+@Table(name = "audience_sketches")
+@IdClass(AudienceSketch.Key.class)
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class AudienceSketch {
+    @Id
+    @Column(length = 16)
+    private String metric;
+
+    @Id
+    @Column(name = "sketch_key", length = 64)
+    private String sketchKey;
+
+    @Column(nullable = false)
+    private byte[] registers;
+
+    @Column(name = "date_updated", columnDefinition = "TIMESTAMP")
+    private LocalDateTime dateUpdated;
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Data
+    public static class Key implements Serializable {
+        private String metric;
+        private String sketchKey;
+    }
+}
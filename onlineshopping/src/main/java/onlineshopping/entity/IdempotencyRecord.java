@@ -0,0 +1,39 @@
+package onlineshopping.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "idempotency_keys", indexes = @Index(name = "idx_idempotency_keys_expires_at", columnList = "expires_at"))
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class IdempotencyRecord {
+    @Id
+    @Column(name = "idempotency_key", length = 300)
+    private String key;// scope:client key
+
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    @Column(name = "response_status")
+    private Integer responseStatus;// null while the first request is still running, 202 until an accepted one ends
+
+    @Column(name = "response_body", columnDefinition = "TEXT")
+    private String responseBody;
+
+    @Column(name = "created_at", columnDefinition = "TIMESTAMP", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", columnDefinition = "TIMESTAMP", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "heartbeat_at", columnDefinition = "TIMESTAMP")
+    private LocalDateTime heartbeatAt;// refreshed by the node running the request until it finishes
+}
@@ -11,7 +11,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "items")
+@Table(name = "items", indexes = @Index(name = "ux_items_item_number", columnList = "item_number", unique = true))
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
@@ -21,7 +21,7 @@ public class Item {
     @SequenceGenerator(
             name = "item_sequence",
             sequenceName = "item_sequence",
-            allocationSize = 1
+            allocationSize = 50
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
@@ -29,6 +29,8 @@ public class Item {
     )
     private Long itemId;
 
+    @Version
+    private Long version;
 
     @Column(name = "item_name", nullable = false)
     private String itemName;
@@ -0,0 +1,41 @@
+package onlineshopping.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+// sales per month and payment method, kept up to date with every transaction insert
+@Entity
+@Table(name = "sales_monthly")
+@IdClass(MonthlySales.Key.class)
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class MonthlySales {
+    @Id
+    @Column(name = "sales_month", length = 7)
+    private String month;// YYYY-MM
+
+    @Id
+    @Column(name = "payment_method", length = 32)
+    private String paymentMethod;
+
+    @Column(name = "total_sales", nullable = false)
+    private double totalSales;
+
+    @Column(name = "transactions", nullable = false)
+    private long transactions;
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Data
+    public static class Key implements Serializable {
+        private String month;
+        private String paymentMethod;
+    }
+}
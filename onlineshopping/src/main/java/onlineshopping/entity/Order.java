@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import onlineshopping.constants.Status;
 import onlineshopping.pay.entity.Invoice;
 import onlineshopping.pay.entity.Transaction;
 
@@ -13,7 +14,12 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_date_created", columnList = "date_created, order_id"),
+        @Index(name = "ux_orders_order_number", columnList = "order_number", unique = true),
+        @Index(name = "ux_orders_idempotency_key", columnList = "idempotency_key", unique = true),
+        @Index(name = "idx_orders_status", columnList = "status, date_created")
+})
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
@@ -23,7 +29,7 @@ public class Order {
     @SequenceGenerator(
             name = "order_sequence",
             sequenceName = "order_sequence",
-            allocationSize = 1
+            allocationSize = 50
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
@@ -31,6 +37,9 @@ public class Order {
     )
     private Long orderId;
 
+    @Version
+    private Long version;
+
     @ManyToOne(cascade = CascadeType.PERSIST,fetch = FetchType.EAGER)
     @JoinColumn(name = "user_id",referencedColumnName = "userId")
     private Customer customer;
@@ -38,8 +47,6 @@ public class Order {
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
     private List<OrderItem> orderItems;
 
-    @OneToOne(mappedBy = "order",cascade = CascadeType.ALL,fetch = FetchType.EAGER)
-    private OrderStatus orderStatus;
 
     @OneToMany(mappedBy = "order", cascade = CascadeType.PERSIST, fetch = FetchType.EAGER)
     private List<Transaction> transaction;
@@ -51,11 +58,20 @@ public class Order {
     @Column(name = "order_number",nullable = false)
     private String orderNo;
 
+    // the scoped Idempotency-Key of the checkout that placed it, written in the same transaction as the order
+    @Column(name = "idempotency_key", length = 300)
+    private String idempotencyKey;
+
     @Column(name = "billing_address",nullable = false)
     private String address;
 
     private double totalPrice;
 
+    // current status, every change is also appended to order_status_events
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private Status status;
+
     @Column(columnDefinition = "TIMESTAMP")
     private LocalDateTime date_created;
 
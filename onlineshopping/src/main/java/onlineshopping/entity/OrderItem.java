@@ -5,12 +5,18 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "order_item")
+@Table(name = "order_item", indexes = {
+        @Index(name = "idx_order_item_order_id", columnList = "order_id"),
+        @Index(name = "idx_order_item_date_created", columnList = "date_created, order_item_id")
+})
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
@@ -20,7 +26,7 @@ public class OrderItem {
     @SequenceGenerator(
             name = "order_item_sequence",
             sequenceName = "order_item_sequence",
-            allocationSize = 1
+            allocationSize = 50
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
@@ -28,6 +34,8 @@ public class OrderItem {
     )
     private Long orderItemId;
 
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
     @ManyToOne(cascade = CascadeType.PERSIST, fetch = FetchType.EAGER)
     @JoinColumn(name = "order_id", referencedColumnName = "orderId")
     private Order order;
@@ -39,6 +47,12 @@ public class OrderItem {
     @Column(name = "quantity", nullable = false)
     private int quantity;
 
+    @Column(name = "unit_price")
+    private Double unitPrice;// price paid per unit, discount applied
+
+    @Column(name = "date_created", columnDefinition = "TIMESTAMP")
+    private LocalDateTime dateCreated;// the order's, copied so the product listing pages on one index
+
     @ElementCollection
     @CollectionTable(name = "order_item_sizes", joinColumns = @JoinColumn(name = "order_item_id"))
     @Column(name = "size")
@@ -48,4 +62,9 @@ public class OrderItem {
     @CollectionTable(name = "order_item_colors", joinColumns = @JoinColumn(name = "order_item_id"))
     @Column(name = "color")
     private List<String> colors; // List of colors for the item
+
+    @PrePersist
+    public void onCreate(){
+        dateCreated = order != null && order.getDate_created() != null ? order.getDate_created() : LocalDateTime.now().withNano(0);
+    }
 }
@@ -0,0 +1,38 @@
+package onlineshopping.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import onlineshopping.constants.Status;
+
+import java.time.LocalDateTime;
+
+// one row per status change, never updated, the current status lives on the order itself
+@Entity
+@Table(name = "order_status_events", indexes = @Index(name = "idx_order_status_events_order", columnList = "order_id, event_id"))
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class OrderStatusEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "event_id")
+    private Long eventId;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "from_status", length = 16)
+    private Status fromStatus;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "to_status", length = 16, nullable = false)
+    private Status toStatus;
+
+    @Column(name = "date_created", columnDefinition = "TIMESTAMP", nullable = false)
+    private LocalDateTime date_created;
+}
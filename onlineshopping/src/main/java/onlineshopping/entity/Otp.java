@@ -19,7 +19,7 @@ public class Otp {
     @SequenceGenerator(
             name = "otp_sequence",
             sequenceName = "otp_sequence",
-            allocationSize = 1
+            allocationSize = 50
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
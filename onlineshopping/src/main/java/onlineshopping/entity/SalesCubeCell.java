@@ -0,0 +1,56 @@
+package onlineshopping.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// one time bucket of one dimension value, the series index serves a range scan for a granularity and dimension
+@Entity
+@Table(name = "sales_cube", indexes = @Index(name = "idx_sales_cube_series",
+        columnList = "granularity, dimension, dimension_value, bucket_start"))
+@IdClass(SalesCubeCell.Key.class)
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class SalesCubeCell {
+    @Id
+    @Column(length = 8)
+    private String granularity;
+
+    @Id
+    @Column(length = 16)
+    private String dimension;
+
+    @Id
+    @Column(name = "dimension_value")
+    private String value;// empty for the all dimension
+
+    @Id
+    @Column(name = "bucket_start", columnDefinition = "TIMESTAMP")
+    private LocalDateTime bucketStart;
+
+    @Column(nullable = false)
+    private double sales;
+
+    @Column(nullable = false)
+    private long units;
+
+    @Column(nullable = false)
+    private long orders;// orders, or payments for the payment dimension
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Data
+    public static class Key implements Serializable {
+        private String granularity;
+        private String dimension;
+        private String value;
+        private LocalDateTime bucketStart;
+    }
+}
@@ -0,0 +1,37 @@
+package onlineshopping.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// a sale or payment written with the transaction that made it, waiting to be folded into the sales cube
+@Entity
+@Table(name = "sales_cube_deltas")
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class SalesCubeDelta {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "delta_id")
+    private Long deltaId;
+
+    @Column(name = "order_id")
+    private Long orderId;// null for a payment
+
+    @Column(nullable = false)
+    private int sign;// 1 placed or paid, -1 canceled
+
+    @Column(name = "payment_method", length = 32)
+    private String paymentMethod;
+
+    private double amount;
+
+    @Column(name = "paid_at", columnDefinition = "TIMESTAMP")
+    private LocalDateTime paidAt;
+}
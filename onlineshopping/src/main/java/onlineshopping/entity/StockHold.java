@@ -0,0 +1,37 @@
+package onlineshopping.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// stock taken by an unpaid order, given back if the order is not paid before expiresAt
+@Entity
+@Table(name = "stock_holds", indexes = {
+        @Index(name = "idx_stock_holds_status", columnList = "status, expires_at"),
+        @Index(name = "ux_stock_holds_order_number", columnList = "order_number", unique = true)
+})
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class StockHold {
+    @Id
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "order_number", nullable = false)
+    private String orderNo;
+
+    @Column(nullable = false, length = 16)
+    private String status;
+
+    @Column(name = "expires_at", columnDefinition = "TIMESTAMP", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "date_updated", columnDefinition = "TIMESTAMP")
+    private LocalDateTime dateUpdated;
+}
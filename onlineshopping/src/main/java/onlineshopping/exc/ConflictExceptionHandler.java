@@ -0,0 +1,21 @@
+package onlineshopping.exc;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+@ControllerAdvice
+public class ConflictExceptionHandler {
+
+    @ExceptionHandler(value = {ConflictException.class})
+    public ResponseEntity<Object> handleConflictException(ConflictException conflictException){
+        // the cause is a Hibernate/Spring concurrency exception, not worth sending to the client
+        GlobalExceptionFields fields = new GlobalExceptionFields(
+                conflictException.getMessage(),
+                null,
+                HttpStatus.CONFLICT
+        );
+        return new ResponseEntity<>(fields, HttpStatus.CONFLICT);
+    }
+}
@@ -0,0 +1,31 @@
+package onlineshopping.history;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import onlineshopping.constants.Status;
+
+import java.util.Collection;
+
+// published inside the transaction that records the status change, from is null for a new order;
+// listeners that write with it (SalesCube) run right away, BestSellers waits for the commit
+@Getter
+@AllArgsConstructor
+public class OrderStatusChangedEvent {
+    private final Collection<Long> orderIds;
+    private final Status from;
+    private final Status to;
+
+    // +1 when the orders start counting as sales (placed, or brought back from canceled), -1 when canceled, else 0
+    public int salesDelta() {
+        if (from == null) {
+            return 1;
+        }
+        if (to == Status.canceled && from != Status.canceled) {
+            return -1;
+        }
+        if (from == Status.canceled && to != Status.canceled) {
+            return 1;
+        }
+        return 0;
+    }
+}
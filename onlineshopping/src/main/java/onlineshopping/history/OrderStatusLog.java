@@ -0,0 +1,87 @@
+package onlineshopping.history;
+
+import lombok.RequiredArgsConstructor;
+import onlineshopping.constants.Status;
+import onlineshopping.entity.OrderStatusEvent;
+import onlineshopping.repo.OrderStatusEventRepo;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Append-only history of order status changes. Events recorded inside a transaction are collected and written
+ * just before it commits as one JDBC batch, so a checkout or a bulk transition of hundreds of orders costs one
+ * round trip for its history, and a rolled back change leaves none.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderStatusLog {
+
+    private static final String INSERT_EVENT =
+            "INSERT INTO order_status_events (order_id, from_status, to_status, date_created) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OrderStatusEventRepo eventRepo;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public void record(Long orderId, Status from, Status to) {
+        record(List.of(orderId), from, to);
+    }
+
+    public void record(Collection<Long> orderIds, Status from, Status to) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        eventPublisher.publishEvent(new OrderStatusChangedEvent(List.copyOf(orderIds), from, to));
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now().withNano(0));
+        List<Object[]> events = new ArrayList<>(orderIds.size());
+        for (Long orderId : orderIds) {
+            events.add(new Object[]{orderId, from == null ? null : from.name(), to.name(), now});
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            write(events);
+            return;
+        }
+        pending().addAll(events);
+    }
+
+    public List<OrderStatusEvent> timeline(String orderNo) {
+        return eventRepo.findTimeline(orderNo);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> pending() {
+        List<Object[]> pending = (List<Object[]>) TransactionSynchronizationManager.getResource(this);
+        if (pending != null) {
+            return pending;
+        }
+        List<Object[]> events = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, events);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                write(events);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(OrderStatusLog.this);
+            }
+        });
+        return events;
+    }
+
+    private void write(List<Object[]> events) {
+        if (!events.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_EVENT, events);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package onlineshopping.id;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake-style ids for order numbers, item numbers and enrollment numbers:
+ * 41 bits of milliseconds since 2024-01-01, 10 bits of node id and a 12 bit sequence per millisecond.
+ * Ids are unique per node without locks and grow with time. They are handed out as 13 characters of
+ * Crockford base32, fixed width, so string order is creation order.
+ * Every instance needs its own id.node-id (0-1023); without one it is derived from host name and pid.
+ */
+@Slf4j
+@Component
+public class IdGenerator {
+
+    static final long EPOCH = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    static final int CODE_LENGTH = 13;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    private final long node;
+    // (milliseconds since EPOCH << SEQUENCE_BITS) | sequence of the last id handed out
+    private final AtomicLong last = new AtomicLong();
+
+    public IdGenerator(@Value("${id.node-id:-1}") long nodeId) {
+        if (nodeId > MAX_NODE) {
+            throw new IllegalArgumentException("id.node-id must be between 0 and " + MAX_NODE);
+        }
+        this.node = nodeId >= 0 ? nodeId : derivedNodeId();
+    }
+
+    public long nextId() {
+        while (true) {
+            long previous = last.get();
+            long now = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+            // same or earlier millisecond (clock stepped back): take the next sequence, which rolls into the
+            // next millisecond when it overflows, so ids never repeat and nobody waits for the clock
+            long next = now > previous ? now : previous + 1;
+            if (last.compareAndSet(previous, next)) {
+                long millis = next >>> SEQUENCE_BITS;
+                long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+                return (millis << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | sequence;
+            }
+        }
+    }
+
+    public String nextCode() {
+        return encode(nextId());
+    }
+
+    static String encode(long id) {
+        char[] code = new char[CODE_LENGTH];
+        for (int i = CODE_LENGTH - 1; i >= 0; i--) {
+            code[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(code);
+    }
+
+    private static long derivedNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        long derived = Math.floorMod((host + "/" + ManagementFactory.getRuntimeMXBean().getName()).hashCode(), (int) MAX_NODE + 1);
+        log.warn("id.node-id is not set, using {} derived from host and pid; set it per instance to rule out clashes", derived);
+        return derived;
+    }
+}
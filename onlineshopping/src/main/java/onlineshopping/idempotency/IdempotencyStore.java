@@ -0,0 +1,301 @@
+package onlineshopping.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import onlineshopping.entity.IdempotencyRecord;
+import onlineshopping.exc.ConflictException;
+import onlineshopping.exc.HandleExceptions;
+import onlineshopping.repo.IdempotencyRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the response of a write request by its Idempotency-Key so a client retry gets the same answer back
+ * instead of running the write again. Finished responses sit in a bounded in-memory LRU with a ttl, every key is
+ * also claimed in the idempotency_keys table first, which settles races between retries hitting different nodes
+ * and survives restarts. Failures worth retrying (5xx, 409) release the key instead of being remembered.
+ * While a request runs, its node refreshes the claim's heartbeat; a retry only takes the key over once the
+ * heartbeat is older than the pending timeout, never because the first request is merely slow.
+ * <p>
+ * The write commits in its own transaction before its response is remembered here. A node that dies between the
+ * two, or an error raised after the commit, would let a retry run the write again. Writes that record the scoped
+ * key in their own transaction pass a {@code committed} lookup: before running again, and before releasing a
+ * failed run, the store asks it for the committed outcome and remembers that instead. Writes without the lookup
+ * keep that window and must refuse a repeat themselves, as paying an order that is already paid does.
+ * <p>
+ * A write answered with 202 Accepted is not finished: the 202 is replayed to retries, the key keeps its heartbeat
+ * and can still be taken over, until {@link #settle} replaces it with the final response or releases the key.
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final int ACCEPTED = HttpStatus.ACCEPTED.value();
+
+    private final IdempotencyRepo idempotencyRepo;
+    private final ObjectMapper objectMapper;
+    private final int maxSize;
+    private final Duration ttl;
+    private final Duration pendingTimeout;
+    private final LinkedHashMap<String, Stored> responses;
+    // key -> request hash of the requests running on this node right now, accepted ones until they are settled
+    private final Map<String, String> running = new ConcurrentHashMap<>();
+
+    public IdempotencyStore(
+            IdempotencyRepo idempotencyRepo,
+            ObjectMapper objectMapper,
+            @Value("${idempotency.max-size:10000}") int maxSize,
+            @Value("${idempotency.ttl:PT24H}") Duration ttl,
+            @Value("${idempotency.pending-timeout:PT1M}") Duration pendingTimeout,
+            @Value("${idempotency.heartbeat-interval:PT15S}") Duration heartbeatInterval
+    ) {
+        if (heartbeatInterval.compareTo(pendingTimeout) >= 0) {
+            throw new IllegalArgumentException("idempotency.heartbeat-interval must be shorter than idempotency.pending-timeout");
+        }
+        this.idempotencyRepo = idempotencyRepo;
+        this.objectMapper = objectMapper;
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.pendingTimeout = pendingTimeout;
+        this.responses = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Stored> eldest) {
+                return size() > IdempotencyStore.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Runs the write once per (scope, key). Without a key the action simply runs.
+     */
+    public <T> ResponseEntity<T> execute(String scope, String idempotencyKey, Object request, Class<T> responseType,
+                                         Supplier<ResponseEntity<T>> action) {
+        return execute(scope, idempotencyKey, request, responseType, key -> action.get(), key -> null);
+    }
+
+    /**
+     * Runs the write once per (scope, key). The action gets the scoped key (null without an Idempotency-Key) to
+     * store with what it commits, committed finds the response again from what was committed under that key,
+     * or returns null when nothing was.
+     */
+    public <T> ResponseEntity<T> execute(String scope, String idempotencyKey, Object request, Class<T> responseType,
+                                         Function<String, ResponseEntity<T>> action,
+                                         Function<String, ResponseEntity<T>> committed) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.apply(null);
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new HandleExceptions(HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+        String key = scope + ":" + idempotencyKey;
+        String requestHash = hash(request);
+
+        Stored stored = lookup(key);
+        if (stored == null) {
+            if (claim(key, requestHash)) {
+                return run(key, requestHash, action, committed);
+            }
+            stored = lookup(key);
+        }
+        if (stored != null && !stored.requestHash.equals(requestHash)) {
+            throw new HandleExceptions(HEADER + " was already used for a different request");
+        }
+        if (stored == null || stored.status == null || stored.status == ACCEPTED) {
+            if (takeOver(key, requestHash)) {
+                return run(key, requestHash, action, committed);
+            }
+            if (stored != null && stored.status != null) {
+                // accepted and still running on a live node
+                return replay(stored, responseType);
+            }
+            throw new ConflictException("A request with this " + HEADER + " is still being processed");
+        }
+        return replay(stored, responseType);
+    }
+
+    /**
+     * Ends a write whose action answered 202 Accepted on this node. The final response replaces the 202 for later
+     * retries; a null outcome means the write failed, then the key is released so a retry runs it again, unless
+     * committed finds it did commit.
+     */
+    public <T> void settle(String scope, String idempotencyKey, ResponseEntity<T> outcome,
+                           Function<String, ResponseEntity<T>> committed) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return;
+        }
+        String key = scope + ":" + idempotencyKey;
+        String requestHash = running.remove(key);
+        if (requestHash == null) {
+            return;
+        }
+        try {
+            ResponseEntity<T> response = outcome != null ? outcome : committed.apply(key);
+            if (response != null) {
+                remember(key, requestHash, response);
+            } else {
+                idempotencyRepo.release(key);
+            }
+        } catch (RuntimeException e) {
+            // the key has no heartbeat any more, a retry takes it over after the pending timeout
+            log.error("Could not settle {} {}", HEADER, key, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval:PT10M}")
+    public void purgeExpired() {
+        idempotencyRepo.purgeExpired(LocalDateTime.now());
+        long now = System.nanoTime();
+        synchronized (responses) {
+            responses.values().removeIf(stored -> stored.isExpired(now));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.heartbeat-interval:PT15S}")
+    public void heartbeat() {
+        if (!running.isEmpty()) {
+            idempotencyRepo.heartbeat(new ArrayList<>(running.keySet()), LocalDateTime.now());
+        }
+    }
+
+    private Stored lookup(String key) {
+        long now = System.nanoTime();
+        synchronized (responses) {
+            Stored stored = responses.get(key);
+            if (stored != null && !stored.isExpired(now)) {
+                return stored;
+            }
+        }
+        Optional<IdempotencyRecord> found = idempotencyRepo.findById(key);
+        if (found.isEmpty() || found.get().getExpiresAt().isBefore(LocalDateTime.now())) {
+            return null;
+        }
+        IdempotencyRecord record = found.get();
+        Stored stored = new Stored(record.getRequestHash(), record.getResponseStatus(), record.getResponseBody(),
+                now + Duration.between(LocalDateTime.now(), record.getExpiresAt()).toNanos());
+        if (stored.status != null && stored.status != ACCEPTED) {
+            synchronized (responses) {
+                responses.put(key, stored);
+            }
+        }
+        return stored;
+    }
+
+    private boolean claim(String key, String requestHash) {
+        LocalDateTime now = LocalDateTime.now();
+        return idempotencyRepo.claim(key, requestHash, now, now.plus(ttl)) == 1;
+    }
+
+    private boolean takeOver(String key, String requestHash) {
+        LocalDateTime now = LocalDateTime.now();
+        return idempotencyRepo.takeOver(key, requestHash, now, now.plus(ttl), now.minus(pendingTimeout)) == 1;
+    }
+
+    private <T> ResponseEntity<T> run(String key, String requestHash, Function<String, ResponseEntity<T>> action,
+                                      Function<String, ResponseEntity<T>> committed) {
+        // a takeover, or a key claimed again after it expired, may find the first run already committed
+        ResponseEntity<T> response = recover(key, requestHash, committed);
+        if (response != null) {
+            return response;
+        }
+        running.put(key, requestHash);
+        try {
+            response = action.apply(key);
+        } catch (RuntimeException e) {
+            running.remove(key);
+            // if the lookup fails too the key stays claimed, without heartbeat, for a takeover to look again
+            ResponseEntity<T> recovered = recover(key, requestHash, committed);
+            if (recovered != null) {
+                return recovered;
+            }
+            idempotencyRepo.release(key);
+            throw e;
+        }
+        if (response.getStatusCode().value() == ACCEPTED) {
+            // still running, the key keeps its heartbeat until the write is settled
+            remember(key, requestHash, response);
+            return response;
+        }
+        running.remove(key);
+        if (response.getStatusCode().is5xxServerError() || response.getStatusCode().isSameCodeAs(HttpStatus.CONFLICT)) {
+            // the error may have come after the commit, then the committed outcome is the answer
+            ResponseEntity<T> recovered = recover(key, requestHash, committed);
+            if (recovered != null) {
+                return recovered;
+            }
+            idempotencyRepo.release(key);
+            return response;
+        }
+        remember(key, requestHash, response);
+        return response;
+    }
+
+    private <T> ResponseEntity<T> recover(String key, String requestHash, Function<String, ResponseEntity<T>> committed) {
+        ResponseEntity<T> response = committed.apply(key);
+        if (response != null) {
+            remember(key, requestHash, response);
+        }
+        return response;
+    }
+
+    private void remember(String key, String requestHash, ResponseEntity<?> response) {
+        String body = writeJson(response.getBody());
+        int status = response.getStatusCode().value();
+        idempotencyRepo.complete(key, status, body);
+        synchronized (responses) {
+            if (status == ACCEPTED) {
+                responses.remove(key);
+            } else {
+                responses.put(key, new Stored(requestHash, status, body, System.nanoTime() + ttl.toNanos()));
+            }
+        }
+    }
+
+    private <T> ResponseEntity<T> replay(Stored stored, Class<T> responseType) {
+        try {
+            T body = stored.body == null ? null : objectMapper.readValue(stored.body, responseType);
+            return ResponseEntity.status(stored.status).header(REPLAYED_HEADER, "true").body(body);
+        } catch (JsonProcessingException e) {
+            throw new HandleExceptions("Error: stored response could not be read", e);
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(writeJson(request).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String writeJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new HandleExceptions("Error: " + e.getMessage(), e);
+        }
+    }
+
+    private record Stored(String requestHash, Integer status, String body, long expiresAt) {
+        boolean isExpired(long now) {
+            return now - expiresAt > 0;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package onlineshopping.inventory;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel (Varghese and Lauck): a ring of buckets, one per tick, each timeout hashed into the bucket of
+ * its deadline with the number of full turns still to wait. Scheduling and cancelling are O(1) and lock-free for
+ * callers (new timeouts go through a queue the ticker drains), a tick only visits one bucket, so the cost does not
+ * grow with the number of pending timeouts. Deadlines are accurate to one tick, expired values are handed to the
+ * consumer on the ticker thread, which should pass them on rather than do slow work itself.
+ */
+@Slf4j
+public class HashedTimingWheel<T> {
+
+    private final long tickNanos;
+    private final int mask;
+    private final LinkedList<Timeout<T>>[] buckets;
+    private final Queue<Timeout<T>> added = new ConcurrentLinkedQueue<>();
+    private final Consumer<T> onExpired;
+    private final Thread ticker;
+    private final long startedAt;
+    private volatile boolean running = true;
+    private long tick;
+
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(String name, Duration tickDuration, int wheelSize, Consumer<T> onExpired) {
+        this.tickNanos = tickDuration.toNanos();
+        // power of two, so the bucket of a tick is a mask instead of a modulo
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+        this.mask = size - 1;
+        this.buckets = new LinkedList[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new LinkedList<>();
+        }
+        this.onExpired = onExpired;
+        this.startedAt = System.nanoTime();
+        this.ticker = new Thread(this::run, name);
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    public Timeout<T> schedule(T value, Duration delay) {
+        long deadline = System.nanoTime() - startedAt + Math.max(0, delay.toNanos());
+        Timeout<T> timeout = new Timeout<>(value, deadline);
+        added.add(timeout);
+        return timeout;
+    }
+
+    public void stop() {
+        running = false;
+        ticker.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            long nextTick = (tick + 1) * tickNanos;
+            long sleep = nextTick - (System.nanoTime() - startedAt);
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            tick++;
+            transferAdded();
+            expire(buckets[(int) (tick & mask)]);
+        }
+    }
+
+    private void transferAdded() {
+        Timeout<T> timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.cancelled.get()) {
+                continue;
+            }
+            // never schedule into a tick that has already been processed
+            long dueTick = Math.max(tick, (timeout.deadline + tickNanos - 1) / tickNanos);
+            timeout.rounds = (dueTick - tick) / buckets.length;
+            buckets[(int) (dueTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(LinkedList<Timeout<T>> bucket) {
+        Iterator<Timeout<T>> timeouts = bucket.iterator();
+        while (timeouts.hasNext()) {
+            Timeout<T> timeout = timeouts.next();
+            if (timeout.cancelled.get()) {
+                timeouts.remove();
+            } else if (timeout.rounds > 0) {
+                timeout.rounds--;
+            } else {
+                timeouts.remove();
+                if (timeout.cancelled.compareAndSet(false, true)) {
+                    try {
+                        onExpired.accept(timeout.value);
+                    } catch (RuntimeException e) {
+                        log.error("Timing wheel consumer failed for {}", timeout.value, e);
+                    }
+                }
+            }
+        }
+    }
+
+    public static class Timeout<T> {
+        private final T value;
+        private final long deadline;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private long rounds;
+
+        private Timeout(T value, long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+
+        // false when the timeout already fired or was cancelled before
+        public boolean cancel() {
+            return cancelled.compareAndSet(false, true);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package onlineshopping.inventory;
+
+import lombok.RequiredArgsConstructor;
+import onlineshopping.catalog.ItemChangedEvent;
+import onlineshopping.model.CheckoutItemView;
+import onlineshopping.model.InventoryStats;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory stock counters per item number, used to turn oversells away before any row is locked.
+ * Counters are seeded from the stock checkout has just read and then kept in place: a committed checkout keeps the
+ * units it reserved, a released hold adds its units back. A counter also knows the units reserved by checkouts
+ * that have not completed yet, those are still in the stock a checkout reads. Another node's checkouts and
+ * releases are not seen, so a counter that comes up short, or was marked stale by a write to the item or a short
+ * row, is reseeded from the read less those units; the batched conditional UPDATE stays the final word.
+ * Counters are never replaced, so a checkout completing late always settles with the counter it took from.
+ */
+@Component
+@RequiredArgsConstructor
+public class InventoryLedger {
+
+    private static final String DECREMENT_STOCK =
+            "UPDATE items SET current_quantity = current_quantity - ?, version = version + 1 " +
+                    "WHERE item_id = ? AND current_quantity >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ConcurrentMap<String, Counter> available = new ConcurrentHashMap<>();
+    private final LongAdder reserved = new LongAdder();
+    private final LongAdder rejectedInMemory = new LongAdder();
+    private final LongAdder rejectedByDatabase = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder reseeded = new LongAdder();
+
+    /**
+     * Takes the quantities (item number -> units) out of the in-memory counters, all or nothing.
+     * Returns the item number without enough stock, or null when everything was reserved.
+     * Inside a transaction the reservation is handed back automatically unless it commits.
+     */
+    public String reserve(Map<String, CheckoutItemView> items, Map<String, Integer> quantities) {
+        Map<Counter, Integer> taken = new HashMap<>();
+        for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+            int read = items.get(line.getKey()).getCurrentQuantity();
+            Counter counter = available.computeIfAbsent(line.getKey(), itemNo -> new Counter(read));
+            int outcome = counter.take(line.getValue(), read);
+            if (outcome == Counter.SHORT) {
+                rejectedInMemory.increment();
+                release(taken);
+                return line.getKey();
+            }
+            if (outcome == Counter.RESEEDED) {
+                reseeded.increment();
+            }
+            taken.put(counter, line.getValue());
+        }
+        reserved.increment();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        taken.forEach(Counter::commit);
+                    } else {
+                        release(taken);
+                    }
+                }
+            });
+        } else {
+            taken.forEach(Counter::commit);
+        }
+        return null;
+    }
+
+    /**
+     * Writes a reservation to the items table as one JDBC batch of conditional decrements, item ids ascending
+     * so concurrent checkouts lock rows in the same order. Returns the first item number whose row was short.
+     */
+    public String persist(Map<String, CheckoutItemView> items, Map<String, Integer> quantities) {
+        List<CheckoutItemView> lines = new ArrayList<>();
+        for (String itemNo : quantities.keySet()) {
+            lines.add(items.get(itemNo));
+        }
+        lines.sort(Comparator.comparing(CheckoutItemView::getItemId));
+
+        List<Object[]> arguments = new ArrayList<>(lines.size());
+        for (CheckoutItemView line : lines) {
+            int quantity = quantities.get(line.getItemNo());
+            arguments.add(new Object[]{quantity, line.getItemId(), quantity});
+        }
+        int[] updated = jdbcTemplate.batchUpdate(DECREMENT_STOCK, arguments);
+
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                rejectedByDatabase.increment();
+                // the counter was seeded from a stale read, start over from the database next time
+                markStale(lines.get(i).getItemNo());
+                return lines.get(i).getItemNo();
+            }
+        }
+        return null;
+    }
+
+    // a checkout's units already left the counter when it reserved them, a release puts its units back
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onItemChanged(ItemChangedEvent event) {
+        Integer stockDelta = event.getStockDelta();
+        if (stockDelta == null) {
+            // published or edited, reseed from the next checkout's read
+            markStale(event.getItemNo());
+        } else if (stockDelta > 0) {
+            Counter counter = available.get(event.getItemNo());
+            if (counter != null) {
+                counter.add(stockDelta);
+            }
+        }
+    }
+
+    public InventoryStats stats() {
+        return new InventoryStats(reserved.sum(), rejectedInMemory.sum(), rejectedByDatabase.sum(), released.sum(),
+                reseeded.sum(), available.size());
+    }
+
+    private void markStale(String itemNo) {
+        Counter counter = available.get(itemNo);
+        if (counter != null) {
+            counter.stale = true;
+        }
+    }
+
+    private void release(Map<Counter, Integer> taken) {
+        taken.forEach(Counter::release);
+        if (!taken.isEmpty()) {
+            released.increment();
+        }
+    }
+
+    /**
+     * Units free to reserve and units reserved by checkouts still running, packed in one long (free in the high
+     * half, in flight in the low half) so every change, a reseed included, is a single lock-free compare-and-set.
+     */
+    static final class Counter {
+
+        static final int TAKEN = 0;
+        static final int RESEEDED = 1;
+        static final int SHORT = 2;
+
+        private final AtomicLong state;
+        volatile boolean stale;
+
+        Counter(int free) {
+            this.state = new AtomicLong(pack(free, 0));
+        }
+
+        /**
+         * Reserves the quantity. A stale counter, or one short of a quantity the read stock still covers once the
+         * units in flight are set aside, is reseeded from the read instead; SHORT leaves the counter unchanged.
+         */
+        int take(int quantity, int read) {
+            boolean reseed = stale;
+            while (true) {
+                long current = state.get();
+                int free = free(current);
+                int inFlight = inFlight(current);
+                if (!reseed && free >= quantity) {
+                    if (state.compareAndSet(current, pack(free - quantity, inFlight + quantity))) {
+                        return TAKEN;
+                    }
+                    continue;
+                }
+                // the read still holds the units of checkouts that have not committed yet
+                if (read - inFlight < quantity) {
+                    return SHORT;
+                }
+                if (state.compareAndSet(current, pack(read - inFlight - quantity, inFlight + quantity))) {
+                    stale = false;
+                    return RESEEDED;
+                }
+            }
+        }
+
+        // the checkout committed, its units are gone from the stock for good
+        void commit(int quantity) {
+            state.addAndGet(-quantity);
+        }
+
+        // the checkout did not commit, its units are free again
+        void release(int quantity) {
+            state.addAndGet(((long) quantity << 32) - quantity);
+        }
+
+        void add(int quantity) {
+            state.addAndGet((long) quantity << 32);
+        }
+
+        private static long pack(int free, int inFlight) {
+            return ((long) free << 32) | (inFlight & 0xFFFFFFFFL);
+        }
+
+        private static int free(long state) {
+            return (int) (state >> 32);
+        }
+
+        private static int inFlight(long state) {
+            return (int) state;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package onlineshopping.inventory;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import onlineshopping.catalog.ItemChangedEvent;
+import onlineshopping.constants.HoldStatus;
+import onlineshopping.constants.Status;
+import onlineshopping.entity.Order;
+import onlineshopping.entity.StockHold;
+import onlineshopping.history.OrderStatusLog;
+import onlineshopping.model.StockHoldStats;
+import onlineshopping.repo.StockHoldRepo;
+import onlineshopping.sales.SalesTotals;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stock taken at checkout is held for the order until it is paid. A hold row is written with the order, a
+ * successful payment confirms it, and a hold still open after the ttl is released: the units go back on the
+ * shelf and the order is canceled. Deadlines live in a {@link HashedTimingWheel} instead of being polled from
+ * the table, which is only read once at startup to put the open holds back on the wheel.
+ * Every move away from held is a conditional update, so expiry, payment and cancel can race safely.
+ */
+@Slf4j
+@Component
+public class StockHolds {
+
+    private static final String INSERT_HOLD =
+            "INSERT INTO stock_holds (order_id, order_number, status, expires_at) VALUES (?, ?, ?, ?)";
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(30);
+
+    private final StockHoldRepo holdRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OrderStatusLog statusLog;
+    private final SalesTotals salesTotals;
+    private final Duration ttl;
+
+    private final HashedTimingWheel<Long> wheel;
+    // expiry touches the database, keep it off the wheel's ticker thread
+    private final ExecutorService releaser = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stock-hold-release");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ConcurrentMap<Long, HashedTimingWheel.Timeout<Long>> timeouts = new ConcurrentHashMap<>();
+
+    private final LongAdder held = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder canceled = new LongAdder();
+    private final LongAdder paidTooLate = new LongAdder();
+
+    public StockHolds(
+            StockHoldRepo holdRepo,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            ApplicationEventPublisher eventPublisher,
+            OrderStatusLog statusLog,
+            SalesTotals salesTotals,
+            @Value("${inventory.hold.ttl:PT15M}") Duration ttl,
+            @Value("${inventory.hold.tick-duration:PT1S}") Duration tickDuration,
+            @Value("${inventory.hold.wheel-size:512}") int wheelSize
+    ) {
+        this.holdRepo = holdRepo;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.statusLog = statusLog;
+        this.salesTotals = salesTotals;
+        this.ttl = ttl;
+        this.wheel = new HashedTimingWheel<>("stock-hold-wheel", tickDuration, wheelSize, this::onExpired);
+    }
+
+    /**
+     * Writes a hold for each freshly saved order, in the caller's transaction and as one JDBC batch.
+     * The expiry is only put on the wheel once that transaction commits.
+     */
+    public void hold(List<Order> orders) {
+        LocalDateTime expiresAt = LocalDateTime.now().withNano(0).plus(ttl);
+        List<Object[]> arguments = new ArrayList<>(orders.size());
+        List<Long> orderIds = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            arguments.add(new Object[]{order.getOrderId(), order.getOrderNo(), HoldStatus.held.name(), Timestamp.valueOf(expiresAt)});
+            orderIds.add(order.getOrderId());
+        }
+        jdbcTemplate.batchUpdate(INSERT_HOLD, arguments);
+
+        afterCommit(() -> {
+            orderIds.forEach(orderId -> schedule(orderId, ttl));
+            held.add(orderIds.size());
+        });
+    }
+
+    /**
+     * False when the order was already paid, its stock was released or its hold has run out, so it must not be
+     * charged. Orders placed before holds existed have no row and stay payable.
+     */
+    public boolean isPayable(String orderNo) {
+        Optional<StockHold> hold = holdRepo.findByOrderNo(orderNo);
+        if (hold.isEmpty()) {
+            return true;
+        }
+        return HoldStatus.held.name().equals(hold.get().getStatus())
+                && hold.get().getExpiresAt().isAfter(LocalDateTime.now());
+    }
+
+    /**
+     * Turns the hold into a sale after a successful payment. Returns false when the hold was released first or
+     * another payment confirmed it, in which case this payment has to be refunded.
+     */
+    public boolean confirm(String orderNo) {
+        Optional<StockHold> hold = holdRepo.findByOrderNo(orderNo);
+        if (hold.isEmpty()) {
+            return true;
+        }
+        Long orderId = hold.get().getOrderId();
+        Integer updated = transactionTemplate.execute(status ->
+                holdRepo.confirm(orderId, LocalDateTime.now().withNano(0)));
+        if (updated != null && updated == 1) {
+            cancelTimeout(orderId);
+            confirmed.increment();
+            return true;
+        }
+        paidTooLate.increment();
+        return false;
+    }
+
+    /**
+     * Gives the stock of canceled orders back, inside the caller's transaction. The order statuses are left to the
+     * caller. Returns the orders that still had an open hold, the others were paid, expired or never held.
+     */
+    public List<Long> cancel(Collection<Long> orderIds) {
+        List<Long> released = release(orderIds);
+        if (!released.isEmpty()) {
+            afterCommit(() -> {
+                released.forEach(this::cancelTimeout);
+                canceled.add(released.size());
+            });
+        }
+        return released;
+    }
+
+    public StockHoldStats stats() {
+        return new StockHoldStats(held.sum(), confirmed.sum(), expired.sum(), canceled.sum(), paidTooLate.sum(), timeouts.size());
+    }
+
+    // every node puts every open hold on its wheel, the conditional update decides who releases it
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        LocalDateTime now = LocalDateTime.now();
+        List<StockHold> open = holdRepo.findByStatus(HoldStatus.held.name());
+        for (StockHold hold : open) {
+            Duration delay = Duration.between(now, hold.getExpiresAt());
+            schedule(hold.getOrderId(), delay.isNegative() ? Duration.ZERO : delay);
+        }
+        if (!open.isEmpty()) {
+            log.info("Put {} open stock holds back on the timing wheel", open.size());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        wheel.stop();
+        releaser.shutdownNow();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void schedule(Long orderId, Duration delay) {
+        timeouts.put(orderId, wheel.schedule(orderId, delay));
+    }
+
+    private void cancelTimeout(Long orderId) {
+        HashedTimingWheel.Timeout<Long> timeout = timeouts.remove(orderId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    // runs on the ticker thread
+    private void onExpired(Long orderId) {
+        timeouts.remove(orderId);
+        try {
+            releaser.execute(() -> expire(orderId));
+        } catch (RejectedExecutionException e) {
+            log.debug("Shutting down, stock hold of order {} is left to the next startup", orderId);
+        }
+    }
+
+    private void expire(Long orderId) {
+        try {
+            Boolean released = transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now().withNano(0);
+                if (holdRepo.cancelOrder(orderId, now) == 0) {
+                    // staff already moved the order on, it keeps its stock
+                    holdRepo.confirm(orderId, now);
+                    return false;
+                }
+                if (release(List.of(orderId)).isEmpty()) {
+                    // paid or canceled in the meantime
+                    status.setRollbackOnly();
+                    return false;
+                }
+                statusLog.record(orderId, Status.ongoing, Status.canceled);
+                salesTotals.canceled(List.of(orderId));
+                return true;
+            });
+            if (Boolean.TRUE.equals(released)) {
+                expired.increment();
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not release the stock hold of order {}, trying again in {}", orderId, RETRY_DELAY, e);
+            schedule(orderId, RETRY_DELAY);
+        }
+    }
+
+    private List<Long> release(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return List.of();
+        }
+        List<Long> released = holdRepo.release(orderIds, LocalDateTime.now().withNano(0));
+        if (released.isEmpty()) {
+            return released;
+        }
+        List<Object[]> quantities = holdRepo.findItemQuantities(released);
+        holdRepo.restock(released);
+        for (Object[] quantity : quantities) {
+            eventPublisher.publishEvent(new ItemChangedEvent((String) quantity[0], ((Number) quantity[1]).intValue()));
+        }
+        return released;
+    }
+}
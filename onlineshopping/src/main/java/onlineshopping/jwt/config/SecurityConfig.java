@@ -30,7 +30,7 @@ public class SecurityConfig {
                                 .permitAll()
                                 .requestMatchers("/api/v1/user/publish-product","/admin/confirm-order")
                                 .permitAll()
-                                .requestMatchers("/api/v1/user/cart/checkout","/api/v1/user/{enrollmentID}","/payments/**")
+                                .requestMatchers("/api/v1/user/cart/checkout","/api/v1/user/cart/checkout/tickets/**","/api/v1/user/{enrollmentID}","/payments/**")
                                 .permitAll()
                                 .requestMatchers("/admin/**").permitAll()
                                 .requestMatchers("/api/v1/entrepreneur").hasAnyRole("ENTREPRENEUR","ADMIN")
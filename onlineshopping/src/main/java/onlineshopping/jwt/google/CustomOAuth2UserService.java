@@ -3,8 +3,8 @@ package onlineshopping.jwt.google;
 import lombok.RequiredArgsConstructor;
 import onlineshopping.constants.UserRole;
 import onlineshopping.entity.Customer;
+import onlineshopping.id.IdGenerator;
 import onlineshopping.repo.UserRepo;
-import onlineshopping.service.impl.AuthService;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.oauth2.client.userinfo.DefaultOAuth2UserService;
@@ -21,6 +21,7 @@ public class CustomOAuth2UserService extends DefaultOAuth2UserService {
 
     private final UserDetailsService userDetailsService;
     private final UserRepo userRepo;
+    private final IdGenerator idGenerator;
 
     @Override
     public OAuth2User loadUser(OAuth2UserRequest userRequest) throws OAuth2AuthenticationException {
@@ -38,7 +39,7 @@ public class CustomOAuth2UserService extends DefaultOAuth2UserService {
                 googleCustomer.setName(name);
                 googleCustomer.setEmail(email);
                 googleCustomer.setMobile(mobile);
-                googleCustomer.setEnrollNumber(AuthService.generateUniqueNumber());
+                googleCustomer.setEnrollNumber(idGenerator.nextCode());
                 googleCustomer.setRole(UserRole.CUSTOMER);
                 userRepo.save(googleCustomer);
             }
@@ -0,0 +1,14 @@
+package onlineshopping.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class AudienceResponse {
+    private final List<DistinctCount> buyersPerDay;
+    private final List<DistinctCount> buyersPerMonth;
+    private final double standardError;// relative, the margins are two standard errors
+}
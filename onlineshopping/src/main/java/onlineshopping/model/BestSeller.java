@@ -0,0 +1,11 @@
+package onlineshopping.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class BestSeller {
+    private final String itemNo;
+    private final long unitsSold;// estimate, never below the true count
+}
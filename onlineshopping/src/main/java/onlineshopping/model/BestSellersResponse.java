@@ -0,0 +1,16 @@
+package onlineshopping.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class BestSellersResponse {
+    private final String category;// null for the whole catalog
+    private final List<BestSeller> items;
+    private final long totalUnitsSold;
+    private final long maxOverestimate;// unitsSold exceeds the true count by at most this, with the given confidence
+    private final double confidence;
+}
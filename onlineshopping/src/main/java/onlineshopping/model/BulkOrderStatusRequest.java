@@ -0,0 +1,15 @@
+package onlineshopping.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class BulkOrderStatusRequest {
+    private List<String> orderNos;
+    private String status;
+}
@@ -0,0 +1,10 @@
+package onlineshopping.model;
+
+// the few item columns checkout needs, loaded for the whole cart with one IN query
+public interface CheckoutItemView {
+    Long getItemId();
+    String getItemNo();
+    double getActualPrice();
+    double getDiscountPrice();
+    int getCurrentQuantity();
+}
@@ -0,0 +1,17 @@
+package onlineshopping.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class CheckoutQueueStats {
+    private final int queued;
+    private final int capacity;
+    private final long accepted;
+    private final long rejected;
+    private final long batches;
+    private final long fallbacks;
+    private final long completed;
+    private final long failed;
+}
@@ -0,0 +1,15 @@
+package onlineshopping.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import onlineshopping.constants.TicketStatus;
+
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CheckoutTicketResponse {
+    private String ticketId;
+    private TicketStatus status;
+    private OrderResponse order;// set once the ticket is completed or failed
+}
@@ -0,0 +1,14 @@
+package onlineshopping.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class CursorPageResponse<T> {
+    private final List<T> content;
+    private final String nextCursor;// null on the last page
+    private final Long totalElements;// only filled when the client asks for it
+}
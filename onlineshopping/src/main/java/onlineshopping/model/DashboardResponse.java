@@ -0,0 +1,14 @@
+package onlineshopping.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Map;
+
+@Getter
+@AllArgsConstructor
+public class DashboardResponse {
+    private final Map<String, Object> panels;
+    private final Map<String, String> errors;// panels left out, with the reason
+    private final boolean complete;
+}
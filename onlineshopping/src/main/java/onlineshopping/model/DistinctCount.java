@@ -0,0 +1,12 @@
+package onlineshopping.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class DistinctCount {
+    private final String key;
+    private final long estimate;
+    private final long margin;// the true count is within estimate +/- margin about 95% of the time
+}
@@ -0,0 +1,17 @@
+package onlineshopping.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import onlineshopping.entity.Item;
+
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@AllArgsConstructor
+public class FacetSearchResponse {
+    private final List<Item> content;
+    private final int totalElements;
+    private final Map<String, Map<String, Integer>> facets;// facet -> value -> matching items
+    private final Map<String, Integer> priceBuckets;
+}
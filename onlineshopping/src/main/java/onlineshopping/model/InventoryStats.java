@@ -0,0 +1,15 @@
+package onlineshopping.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class InventoryStats {
+    private final long reserved;
+    private final long rejectedInMemory;
+    private final long rejectedByDatabase;
+    private final long released;
+    private final long reseeded;
+    private final int trackedItems;
+}
@@ -0,0 +1,17 @@
+package onlineshopping.model;
+
+// read-only projection for the item detail page, filled by one native query without managed entities
+public interface ItemDetailView {
+    String getItemNo();
+    String getItemName();
+    double getActualPrice();
+    double getDiscountPrice();
+    int getQuantity();
+    String getDescription();
+    int getRatings();
+    String getImageUrl();
+    String getType();
+    String[] getSizes();
+    String[] getColors();
+    String[] getCategories();
+}
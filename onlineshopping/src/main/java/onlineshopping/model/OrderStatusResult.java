@@ -0,0 +1,16 @@
+package onlineshopping.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class OrderStatusResult {
+    private String orderNo;
+    private String previousStatus;
+    private String status;
+    private String errorMessage;
+    private boolean successful;
+}
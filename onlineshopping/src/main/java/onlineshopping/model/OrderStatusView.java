@@ -0,0 +1,10 @@
+package onlineshopping.model;
+
+import onlineshopping.constants.Status;
+
+// an order's id and current status, enough to check a status transition without loading the order
+public interface OrderStatusView {
+    Long getOrderId();
+    String getOrderNo();
+    Status getStatus();
+}
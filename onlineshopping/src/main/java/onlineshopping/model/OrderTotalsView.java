@@ -0,0 +1,8 @@
+package onlineshopping.model;
+
+// order count, money and units of a set of orders, canceled orders excluded
+public interface OrderTotalsView {
+    long getOrders();
+    double getSales();
+    long getProducts();
+}
@@ -0,0 +1,14 @@
+package onlineshopping.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class RetryStats {
+    private final String operation;
+    private final long calls;
+    private final long conflicts;
+    private final long retries;
+    private final long exhausted;
+}
@@ -0,0 +1,13 @@
+package onlineshopping.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class SingleFlightStats {
+    private final String name;
+    private final long loads;// loads that actually reached the database
+    private final long coalesced;// callers that shared somebody else's load
+    private final int inFlight;
+}
@@ -0,0 +1,15 @@
+package onlineshopping.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class StockHoldStats {
+    private final long held;
+    private final long confirmed;
+    private final long expired;
+    private final long canceled;
+    private final long paidTooLate;
+    private final int pending;
+}
@@ -1,15 +1,28 @@
 package onlineshopping.pay;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import onlineshopping.constants.PaymentMethod;
+import onlineshopping.constants.RefundStatus;
+import onlineshopping.exc.SearchExceptions;
+import onlineshopping.inventory.StockHolds;
 import onlineshopping.model.PaymentRequest;
 import onlineshopping.model.PaymentResponse;
 import onlineshopping.pay.impl.AirtelMoneyServiceImpl;
 import onlineshopping.pay.impl.GePGServiceImpl;
 import onlineshopping.pay.impl.NmbCardService;
+import onlineshopping.pay.entity.Refund;
 import onlineshopping.pay.impl.TigoPesaServiceImpl;
+import onlineshopping.repo.RefundRepo;
+import onlineshopping.sales.SalesRollup;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class PaymentFacade {
@@ -18,8 +31,61 @@ public class PaymentFacade {
     private final TigoPesaServiceImpl tigoPesaService;
     private final GePGServiceImpl gePGService;
     private final NmbCardService nmbCardService;
+    private final StockHolds stockHolds;
+    private final SalesRollup salesRollup;
+    private final RefundRepo refundRepo;
 
     public PaymentResponse pay(PaymentRequest request){
+        // the order's stock is only held for a while, do not charge for an order that has lost it or is paid
+        if (!stockHolds.isPayable(request.getOrderNo())) {
+            return new PaymentResponse(false, "The order has already been paid or has expired", null, null);
+        }
+
+        PaymentResponse response = charge(request);
+        if (response == null || !response.isSuccess()) {
+            return response;
+        }
+        if (!stockHolds.confirm(request.getOrderNo())) {
+            // the hold ran out or another payment confirmed it while the provider was busy, this charge goes back
+            requestRefund(request, response.getTransactionalID(), "Order expired or was already paid during payment");
+            return new PaymentResponse(false, "The order expired or was already paid during payment, a refund has been requested",
+                    response.getTransactionalID(), response.getAdditionalData());
+        }
+        salesRollup.recordPayment(request.getOrderNo(), request.getProviderType(), request.getAmount(), response.getTransactionalID());
+        return response;
+    }
+
+    public List<Refund> pendingRefunds(){
+        return refundRepo.findByStatus(RefundStatus.pending);
+    }
+
+    // staff paid the amount back through the provider's console
+    @Transactional
+    public void markRefunded(Long refundId){
+        if (refundRepo.markRefunded(refundId, LocalDateTime.now().withNano(0)) == 0) {
+            throw new SearchExceptions("Oops!!! No pending refund matches");
+        }
+    }
+
+    // the providers offer no refund call yet, so the charge is recorded for staff to reverse
+    private void requestRefund(PaymentRequest request, String transactionId, String reason){
+        try {
+            refundRepo.save(Refund.builder()
+                    .orderNo(request.getOrderNo())
+                    .paymentMethod(request.getProviderType())
+                    .amount(request.getAmount())
+                    .transactionId(transactionId)
+                    .reason(reason)
+                    .status(RefundStatus.pending)
+                    .date_created(LocalDateTime.now().withNano(0))
+                    .build());
+        } catch (DataAccessException e) {
+            log.error("Could not record the refund of {} paid by {} for order {}, transaction {}",
+                    request.getAmount(), request.getProviderType(), request.getOrderNo(), transactionId, e);
+        }
+    }
+
+    private PaymentResponse charge(PaymentRequest request){
         PaymentMethod providerType = request.getProviderType();
         switch (providerType){
             case GEPG :
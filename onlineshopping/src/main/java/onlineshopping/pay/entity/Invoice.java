@@ -24,7 +24,7 @@ public class Invoice {
     @SequenceGenerator(
             name = "invoice_sequence",
             sequenceName = "invoice_sequence",
-            allocationSize = 1
+            allocationSize = 50
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
@@ -0,0 +1,52 @@
+package onlineshopping.pay.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import onlineshopping.constants.PaymentMethod;
+import onlineshopping.constants.RefundStatus;
+
+import java.time.LocalDateTime;
+
+// a charge the provider accepted for an order that could no longer take it, to be paid back
+@Entity
+@Table(name = "refunds", indexes = {
+        @Index(name = "ux_refunds_transaction_id", columnList = "transaction_id", unique = true),
+        @Index(name = "idx_refunds_status", columnList = "status, date_created")
+})
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class Refund {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "refund_id")
+    private Long refundId;
+
+    @Column(name = "order_number", nullable = false)
+    private String orderNo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_method", length = 32)
+    private PaymentMethod paymentMethod;
+
+    private double amount;
+
+    @Column(name = "transaction_id")
+    private String transactionId;// the provider's id of the charge to reverse
+
+    private String reason;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private RefundStatus status;
+
+    @Column(name = "date_created", columnDefinition = "TIMESTAMP", nullable = false)
+    private LocalDateTime date_created;
+
+    @Column(name = "date_updated", columnDefinition = "TIMESTAMP")
+    private LocalDateTime date_updated;
+}
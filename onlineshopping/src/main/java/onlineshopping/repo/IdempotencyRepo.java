@@ -0,0 +1,61 @@
+package onlineshopping.repo;
+
+import onlineshopping.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+@Repository
+public interface IdempotencyRepo extends JpaRepository<IdempotencyRecord, String> {
+
+    // 1 when this caller owns the key now (new, or expired and not purged yet), 0 when another request has it
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (idempotency_key, request_hash, created_at, expires_at, heartbeat_at) " +
+            "VALUES (:key, :requestHash, :now, :expiresAt, :now) " +
+            "ON CONFLICT (idempotency_key) DO UPDATE SET request_hash = EXCLUDED.request_hash, " +
+            "created_at = EXCLUDED.created_at, expires_at = EXCLUDED.expires_at, heartbeat_at = EXCLUDED.heartbeat_at, " +
+            "response_status = NULL, response_body = NULL " +
+            "WHERE idempotency_keys.expires_at < EXCLUDED.created_at",
+            nativeQuery = true)
+    int claim(@Param("key") String key, @Param("requestHash") String requestHash,
+              @Param("now") LocalDateTime now, @Param("expiresAt") LocalDateTime expiresAt);
+
+    // a claim whose node stopped its heartbeat (crash) is handed over after the pending timeout, a slow request is not;
+    // an accepted (202) write still runs too, its stored response goes with the takeover
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.createdAt = :now, r.expiresAt = :expiresAt, r.heartbeatAt = :now, " +
+            "r.responseStatus = NULL, r.responseBody = NULL " +
+            "WHERE r.key = :key AND r.requestHash = :requestHash AND (r.responseStatus IS NULL OR r.responseStatus = 202) " +
+            "AND COALESCE(r.heartbeatAt, r.createdAt) < :staleBefore")
+    int takeOver(@Param("key") String key, @Param("requestHash") String requestHash, @Param("now") LocalDateTime now,
+                 @Param("expiresAt") LocalDateTime expiresAt, @Param("staleBefore") LocalDateTime staleBefore);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.heartbeatAt = :now " +
+            "WHERE r.key IN :keys AND (r.responseStatus IS NULL OR r.responseStatus = 202)")
+    int heartbeat(@Param("keys") Collection<String> keys, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.responseStatus = :status, r.responseBody = :body WHERE r.key = :key")
+    int complete(@Param("key") String key, @Param("status") int status, @Param("body") String body);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.key = :key AND (r.responseStatus IS NULL OR r.responseStatus = 202)")
+    int release(@Param("key") String key);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int purgeExpired(@Param("now") LocalDateTime now);
+}
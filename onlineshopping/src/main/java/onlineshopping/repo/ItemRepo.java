@@ -1,13 +1,14 @@
 package onlineshopping.repo;
 
-import jakarta.persistence.LockModeType;
 import onlineshopping.entity.Item;
+import onlineshopping.model.CheckoutItemView;
+import onlineshopping.model.ItemDetailView;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,20 +16,28 @@ import java.util.Optional;
 public interface ItemRepo extends JpaRepository<Item, Long> {
     Item findByItemNo(String itemNo);
 
-    @Query("SELECT LOWER(i.itemName) FROM Item i WHERE LOWER(i.itemName) LIKE LOWER(CONCAT('%', :queryStr, '%')) ORDER BY LOWER(i.itemName)")
-    List<String> findItemNames(@Param("queryStr") String queryStr);
+    List<Item> findByItemNoIn(Collection<String> itemNos);
 
-    @Query("SELECT i FROM Item i " +
-            "LEFT JOIN i.sizes s " +
-            "LEFT JOIN i.colors c " +
-            "LEFT JOIN i.category ca " +
-            "ORDER BY i.itemName")
+    // the element collections are EAGER already, joining them here only multiplied the rows
+    @Query("SELECT i FROM Item i ORDER BY i.itemName")
     List<Item> findAllItem();
 
     @Query("SELECT i.imageUrl FROM Item i WHERE i.imageUrl LIKE :imageName")
     Optional<String> findByImageUrl(@Param("imageName") String imageName);
 
-    @Lock(LockModeType.PESSIMISTIC_WRITE)
-    @Query("SELECT i FROM Item i WHERE i.itemNo = :itemNo")
-    Item findByItemNoForUpdate(@Param("itemNo") String itemNo);
+    // collections are aggregated in correlated sub-selects so the detail page is one round trip and no cartesian product
+    @Query(value = "SELECT i.item_number AS \"itemNo\", i.item_name AS \"itemName\", i.price AS \"actualPrice\", " +
+            "i.discount AS \"discountPrice\", i.initial_quantity AS \"quantity\", i.description AS \"description\", " +
+            "i.ratings AS \"ratings\", i.images AS \"imageUrl\", i.type AS \"type\", " +
+            "ARRAY(SELECT s.size FROM item_sizes s WHERE s.item_id = i.item_id) AS \"sizes\", " +
+            "ARRAY(SELECT c.color FROM item_colors c WHERE c.item_id = i.item_id) AS \"colors\", " +
+            "ARRAY(SELECT ca.size FROM item_categories ca WHERE ca.item_id = i.item_id) AS \"categories\" " +
+            "FROM items i WHERE i.item_number = :itemNo",
+            nativeQuery = true)
+    Optional<ItemDetailView> findItemDetail(@Param("itemNo") String itemNo);
+
+    @Query("SELECT i.itemId AS itemId, i.itemNo AS itemNo, i.actualPrice AS actualPrice, " +
+            "i.discountPrice AS discountPrice, i.currentQuantity AS currentQuantity " +
+            "FROM Item i WHERE i.itemNo IN :itemNos")
+    List<CheckoutItemView> findCheckoutItems(@Param("itemNos") Collection<String> itemNos);
 }
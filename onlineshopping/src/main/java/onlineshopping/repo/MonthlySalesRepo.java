@@ -0,0 +1,40 @@
+package onlineshopping.repo;
+
+import onlineshopping.entity.MonthlySales;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface MonthlySalesRepo extends JpaRepository<MonthlySales, MonthlySales.Key> {
+
+    // one row lock on the (month, method) row, taken in the transaction that inserts the payment
+    @Modifying
+    @Query(value = "INSERT INTO sales_monthly (sales_month, payment_method, total_sales, transactions) " +
+            "VALUES (:month, :paymentMethod, :amount, 1) " +
+            "ON CONFLICT (sales_month, payment_method) DO UPDATE SET " +
+            "total_sales = sales_monthly.total_sales + EXCLUDED.total_sales, transactions = sales_monthly.transactions + 1",
+            nativeQuery = true)
+    int add(@Param("month") String month, @Param("paymentMethod") String paymentMethod, @Param("amount") double amount);
+
+    @Query("SELECT s.month, SUM(s.totalSales) FROM MonthlySales s GROUP BY s.month ORDER BY s.month")
+    List<Object[]> findSalesPerMonth();
+
+    // rebuilds the rollup from the transactions recorded before it existed, only meant for an empty table
+    @Modifying
+    @Query(value = "INSERT INTO sales_monthly (sales_month, payment_method, total_sales, transactions) " +
+            "SELECT TO_CHAR(t.timestamp, 'YYYY-MM'), COALESCE(t.payment_method, 'UNKNOWN'), SUM(t.amount), COUNT(*) " +
+            "FROM transaction t WHERE t.timestamp IS NOT NULL " +
+            "GROUP BY TO_CHAR(t.timestamp, 'YYYY-MM'), COALESCE(t.payment_method, 'UNKNOWN') " +
+            "ON CONFLICT (sales_month, payment_method) DO NOTHING",
+            nativeQuery = true)
+    int backfill();
+
+    @Modifying
+    @Query(value = "LOCK TABLE sales_monthly IN SHARE ROW EXCLUSIVE MODE", nativeQuery = true)
+    void lock();
+}
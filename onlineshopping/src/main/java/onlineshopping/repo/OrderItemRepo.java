@@ -1,18 +1,23 @@
 package onlineshopping.repo;
 
+import jakarta.persistence.QueryHint;
 import onlineshopping.entity.OrderItem;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
 @Repository
 public interface OrderItemRepo extends JpaRepository<OrderItem,Long> {
 
-    @Query("SELECT SUM(oi.quantity) FROM OrderItem oi")
-    int findTotalProduct();
-
     @Query("SELECT i.itemName, i.actualPrice, oi.order.date_created, i.datePublished " +
             "FROM OrderItem oi " +
             "JOIN oi.item i " +
@@ -20,4 +25,29 @@ public interface OrderItemRepo extends JpaRepository<OrderItem,Long> {
             "ORDER BY o.date_created DESC")
     Page<Object[]> findProducts(Pageable pageable);
 
+    // seek and order on order_item columns only, so idx_order_item_date_created serves the page
+    @Query("SELECT i.itemName, i.actualPrice, oi.dateCreated, i.datePublished, oi.orderItemId " +
+            "FROM OrderItem oi " +
+            "JOIN oi.item i " +
+            "ORDER BY oi.dateCreated DESC, oi.orderItemId DESC")
+    List<Object[]> findProductsFirst(Pageable pageable);
+
+    @Query("SELECT i.itemName, i.actualPrice, oi.dateCreated, i.datePublished, oi.orderItemId " +
+            "FROM OrderItem oi " +
+            "JOIN oi.item i " +
+            "WHERE (oi.dateCreated, oi.orderItemId) < (:dateCreated, :orderItemId) " +
+            "ORDER BY oi.dateCreated DESC, oi.orderItemId DESC")
+    List<Object[]> findProductsBefore(@Param("dateCreated") LocalDateTime dateCreated, @Param("orderItemId") Long orderItemId, Pageable pageable);
+
+    // forward-only cursor for exports, must be consumed inside a transaction
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT o.orderNo, i.itemNo, i.itemName, oi.quantity, i.actualPrice, i.discountPrice, o.date_created " +
+            "FROM OrderItem oi " +
+            "JOIN oi.item i " +
+            "JOIN oi.order o " +
+            "ORDER BY oi.dateCreated, oi.orderItemId")
+    Stream<Object[]> streamProducts();
 }
@@ -1,36 +1,112 @@
 package onlineshopping.repo;
 
+import jakarta.persistence.QueryHint;
 import onlineshopping.entity.Order;
+import onlineshopping.model.OrderStatusView;
+import onlineshopping.model.OrderTotalsView;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository
 public interface OrderRepo extends JpaRepository<Order,Long> {
     Order findByOrderNo(String orderNo);
 
-    @Query("SELECT o.orderNo, u.name, u.email, o.totalPrice, s.order_status, o.date_created " +
+    @Query("SELECT o.orderId FROM Order o WHERE o.orderNo = :orderNo")
+    Optional<Long> findIdByOrderNo(@Param("orderNo") String orderNo);
+
+    @Query("SELECT o.orderNo FROM Order o WHERE o.idempotencyKey = :idempotencyKey")
+    Optional<String> findOrderNoByIdempotencyKey(@Param("idempotencyKey") String idempotencyKey);
+
+    @Query("SELECT o.orderNo, u.name, u.email, o.totalPrice, o.status, o.date_created " +
            "FROM Order o " +
             "JOIN o.customer u " +
-            "JOIN o.orderStatus s " +
             "ORDER BY o.date_created"
     )
     Page<Object[]> findOrders(Pageable pageable);
 
-    @Query("SELECT o.orderNo, u.name, u.email, o.totalPrice, s.order_status, o.date_created " +
+    @Query("SELECT o.orderNo, u.name, u.email, o.totalPrice, o.status, o.date_created " +
             "FROM Order o " +
             "JOIN o.customer u " +
-            "JOIN o.orderStatus s " +
             "ORDER BY o.date_created DESC "
     )
     Page<Object[]> findLatestOrders(Pageable pageable);
 
-    @Query("SELECT SUM(o.totalPrice) FROM Order o ")
-    int findTotalSales();
+    // keyset variants: the last (date_created, orderId) seen is the seek key, no count and no OFFSET
+    @Query("SELECT o.orderNo, u.name, u.email, o.totalPrice, o.status, o.date_created, o.orderId " +
+            "FROM Order o " +
+            "JOIN o.customer u " +
+            "ORDER BY o.date_created, o.orderId"
+    )
+    List<Object[]> findOrdersFirst(Pageable pageable);
+
+    @Query("SELECT o.orderNo, u.name, u.email, o.totalPrice, o.status, o.date_created, o.orderId " +
+            "FROM Order o " +
+            "JOIN o.customer u " +
+            "WHERE (o.date_created, o.orderId) > (:dateCreated, :orderId) " +
+            "ORDER BY o.date_created, o.orderId"
+    )
+    List<Object[]> findOrdersAfter(@Param("dateCreated") LocalDateTime dateCreated, @Param("orderId") Long orderId, Pageable pageable);
+
+    @Query("SELECT o.orderNo, u.name, u.email, o.totalPrice, o.status, o.date_created, o.orderId " +
+            "FROM Order o " +
+            "JOIN o.customer u " +
+            "ORDER BY o.date_created DESC, o.orderId DESC"
+    )
+    List<Object[]> findLatestOrdersFirst(Pageable pageable);
 
-    @Query("SELECT SUM(o.orderId) FROM Order o ")
-    int findTotalOrders();
+    @Query("SELECT o.orderNo, u.name, u.email, o.totalPrice, o.status, o.date_created, o.orderId " +
+            "FROM Order o " +
+            "JOIN o.customer u " +
+            "WHERE (o.date_created, o.orderId) < (:dateCreated, :orderId) " +
+            "ORDER BY o.date_created DESC, o.orderId DESC"
+    )
+    List<Object[]> findLatestOrdersBefore(@Param("dateCreated") LocalDateTime dateCreated, @Param("orderId") Long orderId, Pageable pageable);
+
+    // forward-only cursor for exports, must be consumed inside a transaction
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT o.orderNo, u.name, u.email, o.address, o.totalPrice, o.status, o.date_created " +
+            "FROM Order o " +
+            "JOIN o.customer u " +
+            "ORDER BY o.date_created, o.orderId"
+    )
+    Stream<Object[]> streamOrders();
+
+    @Query("SELECT o.orderId AS orderId, o.orderNo AS orderNo, o.status AS status FROM Order o WHERE o.orderNo IN :orderNos")
+    List<OrderStatusView> findStatuses(@Param("orderNos") Collection<String> orderNos);
+
+    // moves only the orders still in the expected status and returns which ones moved
+    @Query(value = "UPDATE orders SET status = :status, date_updated = :now, version = version + 1 " +
+            "WHERE order_id IN (:orderIds) AND status = :fromStatus RETURNING order_id",
+            nativeQuery = true)
+    List<Long> transition(@Param("orderIds") Collection<Long> orderIds, @Param("fromStatus") String fromStatus,
+                          @Param("status") String status, @Param("now") LocalDateTime now);
+
+    @Query("SELECT COUNT(o) AS orders, COALESCE(SUM(o.totalPrice), 0) AS sales, " +
+            "COALESCE((SELECT SUM(oi.quantity) FROM OrderItem oi JOIN oi.order c " +
+            "WHERE c.status IS NULL OR c.status <> onlineshopping.constants.Status.canceled), 0) AS products " +
+            "FROM Order o " +
+            "WHERE o.status IS NULL OR o.status <> onlineshopping.constants.Status.canceled")
+    OrderTotalsView findTotals();
+
+    @Query("SELECT COUNT(o) AS orders, COALESCE(SUM(o.totalPrice), 0) AS sales, " +
+            "COALESCE((SELECT SUM(oi.quantity) FROM OrderItem oi WHERE oi.order.orderId IN :orderIds), 0) AS products " +
+            "FROM Order o " +
+            "WHERE o.orderId IN :orderIds")
+    OrderTotalsView findTotals(@Param("orderIds") Collection<Long> orderIds);
 
 }
@@ -0,0 +1,18 @@
+package onlineshopping.repo;
+
+import onlineshopping.entity.OrderStatusEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OrderStatusEventRepo extends JpaRepository<OrderStatusEvent, Long> {
+
+    @Query("SELECT e FROM OrderStatusEvent e " +
+            "WHERE e.orderId = (SELECT o.orderId FROM Order o WHERE o.orderNo = :orderNo) " +
+            "ORDER BY e.eventId")
+    List<OrderStatusEvent> findTimeline(@Param("orderNo") String orderNo);
+}
@@ -0,0 +1,24 @@
+package onlineshopping.repo;
+
+import onlineshopping.constants.RefundStatus;
+import onlineshopping.pay.entity.Refund;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RefundRepo extends JpaRepository<Refund, Long> {
+
+    @Query("SELECT r FROM Refund r WHERE r.status = :status ORDER BY r.date_created")
+    List<Refund> findByStatus(@Param("status") RefundStatus status);
+
+    @Modifying
+    @Query("UPDATE Refund r SET r.status = onlineshopping.constants.RefundStatus.refunded, r.date_updated = :now " +
+            "WHERE r.refundId = :refundId AND r.status = onlineshopping.constants.RefundStatus.pending")
+    int markRefunded(@Param("refundId") Long refundId, @Param("now") LocalDateTime now);
+}
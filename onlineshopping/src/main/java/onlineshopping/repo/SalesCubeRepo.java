@@ -0,0 +1,26 @@
+package onlineshopping.repo;
+
+import onlineshopping.entity.SalesCubeCell;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SalesCubeRepo extends JpaRepository<SalesCubeCell, SalesCubeCell.Key> {
+
+    @Query("SELECT c FROM SalesCubeCell c WHERE c.granularity = :granularity AND c.dimension = :dimension " +
+            "AND c.value = :value AND c.bucketStart BETWEEN :start AND :end ORDER BY c.bucketStart")
+    List<SalesCubeCell> findSeries(@Param("granularity") String granularity, @Param("dimension") String dimension,
+                                   @Param("value") String value,
+                                   @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // every value of the dimension, for a stacked chart
+    @Query("SELECT c FROM SalesCubeCell c WHERE c.granularity = :granularity AND c.dimension = :dimension " +
+            "AND c.bucketStart BETWEEN :start AND :end ORDER BY c.bucketStart, c.value")
+    List<SalesCubeCell> findSeries(@Param("granularity") String granularity, @Param("dimension") String dimension,
+                                   @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+}
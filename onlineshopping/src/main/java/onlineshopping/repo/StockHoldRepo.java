@@ -0,0 +1,49 @@
+package onlineshopping.repo;
+
+import onlineshopping.entity.StockHold;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StockHoldRepo extends JpaRepository<StockHold, Long> {
+
+    Optional<StockHold> findByOrderNo(String orderNo);
+
+    List<StockHold> findByStatus(String status);
+
+    // moves away from held are conditional, so only one node and one caller ever wins them
+    @Modifying
+    @Query("UPDATE StockHold h SET h.status = 'confirmed', h.dateUpdated = :now WHERE h.orderId = :orderId AND h.status = 'held'")
+    int confirm(@Param("orderId") Long orderId, @Param("now") LocalDateTime now);
+
+    // releases the holds still open among the orders and returns which ones it released
+    @Query(value = "UPDATE stock_holds SET status = 'released', date_updated = :now " +
+            "WHERE order_id IN (:orderIds) AND status = 'held' RETURNING order_id",
+            nativeQuery = true)
+    List<Long> release(@Param("orderIds") Collection<Long> orderIds, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query(value = "UPDATE items i SET current_quantity = i.current_quantity + q.quantity, version = i.version + 1 " +
+            "FROM (SELECT item_id, SUM(quantity) AS quantity FROM order_item WHERE order_id IN (:orderIds) GROUP BY item_id) q " +
+            "WHERE i.item_id = q.item_id",
+            nativeQuery = true)
+    int restock(@Param("orderIds") Collection<Long> orderIds);
+
+    // only an order nobody has started on yet is canceled by its hold running out
+    @Modifying
+    @Query("UPDATE Order o SET o.status = onlineshopping.constants.Status.canceled, o.date_updated = :now, o.version = o.version + 1 " +
+            "WHERE o.orderId = :orderId AND o.status = onlineshopping.constants.Status.ongoing")
+    int cancelOrder(@Param("orderId") Long orderId, @Param("now") LocalDateTime now);
+
+    // item number and units per item, as restock puts them back
+    @Query("SELECT i.itemNo, SUM(oi.quantity) FROM OrderItem oi JOIN oi.item i WHERE oi.order.orderId IN :orderIds GROUP BY i.itemNo")
+    List<Object[]> findItemQuantities(@Param("orderIds") Collection<Long> orderIds);
+}
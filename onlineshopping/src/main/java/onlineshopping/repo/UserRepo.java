@@ -1,13 +1,19 @@
 package onlineshopping.repo;
 
+import jakarta.persistence.QueryHint;
 import onlineshopping.entity.Customer;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
 import java.util.Optional;
 
 @Repository
@@ -17,12 +23,40 @@ public interface UserRepo extends JpaRepository<Customer,Long> {
 
     Customer findByMobile(String mobile);
 
+    // id only, loading the customer would also pull in every past order through the EAGER mapping
+    @Query("SELECT u.userId FROM Customer u WHERE u.email = :email")
+    Optional<Long> findIdByEmail(@Param("email") String email);
+
     @Query("SELECT u.name, u.email, u.mobile, u.enrollNumber, u.date_created, u.role " +
             "FROM Customer u " +
             "ORDER BY u.date_created "
     )
     Page<Object[]> findAllUsers(Pageable pageable);
 
+    @Query("SELECT u.name, u.email, u.mobile, u.enrollNumber, u.date_created, u.role, u.userId " +
+            "FROM Customer u " +
+            "ORDER BY u.date_created, u.userId"
+    )
+    List<Object[]> findAllUsersFirst(Pageable pageable);
+
+    @Query("SELECT u.name, u.email, u.mobile, u.enrollNumber, u.date_created, u.role, u.userId " +
+            "FROM Customer u " +
+            "WHERE (u.date_created, u.userId) > (:dateCreated, :userId) " +
+            "ORDER BY u.date_created, u.userId"
+    )
+    List<Object[]> findAllUsersAfter(@Param("dateCreated") LocalDateTime dateCreated, @Param("userId") Long userId, Pageable pageable);
+
+    // forward-only cursor for exports, must be consumed inside a transaction
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT u.name, u.email, u.mobile, u.enrollNumber, u.date_created, u.role " +
+            "FROM Customer u " +
+            "ORDER BY u.date_created, u.userId"
+    )
+    Stream<Object[]> streamUsers();
+
     @Query("SELECT u FROM Customer u WHERE u.enrollNumber = :enrollmentID")
     Optional<Customer> findByEnrollmentNumber(@Param("enrollmentID") String enrollmentID);
 }
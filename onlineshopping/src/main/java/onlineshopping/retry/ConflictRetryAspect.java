@@ -0,0 +1,91 @@
+package onlineshopping.retry;
+
+import onlineshopping.exc.ConflictException;
+import onlineshopping.model.RetryStats;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Retry policy for {@link RetryOnConflict} methods. Ordered ahead of the transaction interceptor so every
+ * attempt gets its own transaction and re-reads the rows it lost on. Backoff is exponential with full jitter,
+ * so callers that collided once do not collide again in lockstep.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ConflictRetryAspect {
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<>();
+
+    public ConflictRetryAspect(@Value("${retry.conflict.max-attempts:4}") int maxAttempts,
+                               @Value("${retry.conflict.base-delay:PT0.01S}") Duration baseDelay,
+                               @Value("${retry.conflict.max-delay:PT0.2S}") Duration maxDelay) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMillis = baseDelay.toMillis();
+        this.maxDelayMillis = maxDelay.toMillis();
+    }
+
+    @Around("@annotation(onlineshopping.retry.RetryOnConflict)")
+    public Object retry(ProceedingJoinPoint joinPoint) throws Throwable {
+        // a conflict inside someone else's transaction has to be retried by whoever owns that transaction
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+        Counters operation = counters.computeIfAbsent(joinPoint.getSignature().toShortString(), key -> new Counters());
+        operation.calls.increment();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return joinPoint.proceed();
+            } catch (ConcurrencyFailureException conflict) {
+                operation.conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    operation.exhausted.increment();
+                    throw new ConflictException("The record was changed by someone else, please try again", conflict);
+                }
+                operation.retries.increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    public List<RetryStats> stats() {
+        List<RetryStats> stats = new ArrayList<>();
+        counters.forEach((operation, c) -> stats.add(new RetryStats(
+                operation, c.calls.sum(), c.conflicts.sum(), c.retries.sum(), c.exhausted.sum())));
+        stats.sort((a, b) -> a.getOperation().compareTo(b.getOperation()));
+        return stats;
+    }
+
+    private void backoff(int attempt) throws InterruptedException {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+        if (ceiling > 0) {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        }
+    }
+
+    private static class Counters {
+        final LongAdder calls = new LongAdder();
+        final LongAdder conflicts = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder exhausted = new LongAdder();
+    }
+}
@@ -0,0 +1,15 @@
+package onlineshopping.retry;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs the method again, in a fresh transaction, when it loses a race on a versioned row or a lock.
+ * Put it on the outermost transactional service method; inside an already running transaction it does nothing.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+}
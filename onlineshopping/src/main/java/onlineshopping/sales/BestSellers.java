@@ -0,0 +1,270 @@
+package onlineshopping.sales;
+
+import lombok.extern.slf4j.Slf4j;
+import onlineshopping.exc.HandleExceptions;
+import onlineshopping.history.OrderStatusChangedEvent;
+import onlineshopping.model.BestSeller;
+import onlineshopping.model.BestSellersResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Best-seller leaderboards, by units sold, for the whole catalog and per category. Units per item are counted in a
+ * {@link CountMinSketch} and each leaderboard keeps the top items in a min-heap, so memory stays fixed however many
+ * items sell. Committed checkouts and cancellations are queued and applied on a short schedule, each apply publishes
+ * immutable ranked lists that reads only slice. Built from the order lines at startup; an item that drops out of a
+ * leaderboard after cancellations only comes back once it sells again or the next startup rebuilds the boards.
+ */
+@Slf4j
+@Component
+public class BestSellers {
+
+    private static final String ORDER_LINES =
+            "SELECT oi.order_id, oi.order_item_id, oi.quantity, i.item_number, c.size AS category " +
+                    "FROM order_item oi " +
+                    "JOIN items i ON i.item_id = oi.item_id " +
+                    "LEFT JOIN item_categories c ON c.item_id = i.item_id " +
+                    "WHERE oi.order_id IN (:orderIds)";
+    private static final String UNITS_SOLD =
+            "SELECT i.item_number, SUM(oi.quantity) AS units " +
+                    "FROM order_item oi " +
+                    "JOIN orders o ON o.order_id = oi.order_id " +
+                    "JOIN items i ON i.item_id = oi.item_id " +
+                    "WHERE o.status IS NULL OR o.status <> 'canceled' " +
+                    "GROUP BY i.item_number";
+    private static final String ITEM_CATEGORIES =
+            "SELECT DISTINCT i.item_number, c.size AS category " +
+                    "FROM item_categories c JOIN items i ON i.item_id = c.item_id " +
+                    "WHERE c.size IS NOT NULL";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final int capacity;
+    private final CountMinSketch sketch;
+
+    // only touched by apply and rebuild, under the lock
+    private final Leaderboard overall;
+    private final Map<String, Leaderboard> byCategory = new HashMap<>();
+    private final Object lock = new Object();
+
+    private final Queue<OrderDelta> pending = new ConcurrentLinkedQueue<>();
+    private volatile Published published = new Published(List.of(), Map.of(), 0, 0);
+
+    public BestSellers(
+            JdbcTemplate jdbcTemplate,
+            @Value("${sales.best-sellers.capacity:100}") int capacity,
+            @Value("${sales.best-sellers.sketch-width:2048}") int sketchWidth,
+            @Value("${sales.best-sellers.sketch-depth:4}") int sketchDepth
+    ) {
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.capacity = capacity;
+        this.sketch = new CountMinSketch(sketchWidth, sketchDepth);
+        this.overall = new Leaderboard(capacity);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        int sign = event.salesDelta();
+        if (sign == 0) {
+            return;
+        }
+        for (Long orderId : event.getOrderIds()) {
+            pending.add(new OrderDelta(orderId, sign));
+        }
+    }
+
+    /**
+     * The top items of a category, or of the whole catalog when no category is given.
+     */
+    public BestSellersResponse top(String category, int limit) {
+        if (limit <= 0 || limit > capacity) {
+            throw new HandleExceptions("The limit must be between 1 and " + capacity);
+        }
+        Published current = published;
+        String key = normalize(category);
+        List<BestSeller> ranked = key.isEmpty() ? current.overall : current.byCategory.getOrDefault(key, List.of());
+        return new BestSellersResponse(key.isEmpty() ? null : key, ranked.subList(0, Math.min(limit, ranked.size())),
+                current.totalUnits, current.errorBound, sketch.confidence());
+    }
+
+    @Scheduled(fixedDelayString = "${sales.best-sellers.refresh-interval:PT1S}")
+    public void apply() {
+        synchronized (lock) {
+            List<OrderDelta> deltas = new ArrayList<>();
+            OrderDelta delta;
+            while ((delta = pending.poll()) != null) {
+                deltas.add(delta);
+            }
+            if (deltas.isEmpty()) {
+                return;
+            }
+            try {
+                count(deltas);
+            } catch (RuntimeException e) {
+                // nothing was counted yet, the lines are read before the sketch moves
+                pending.addAll(deltas);
+                log.error("Could not update the best sellers with {} orders, retrying later", deltas.size(), e);
+                return;
+            }
+            publish();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (lock) {
+            // the query below reads every order committed so far
+            pending.clear();
+            sketch.clear();
+            overall.clear();
+            byCategory.clear();
+
+            Map<String, List<String>> categories = new HashMap<>();
+            jdbcTemplate.getJdbcTemplate().query(ITEM_CATEGORIES, row -> {
+                categories.computeIfAbsent(row.getString("item_number"), key -> new ArrayList<>())
+                        .add(normalize(row.getString("category")));
+            });
+            jdbcTemplate.getJdbcTemplate().query(UNITS_SOLD, row -> {
+                String itemNo = row.getString("item_number");
+                long estimate = sketch.add(itemNo, row.getLong("units"));
+                offer(itemNo, estimate, categories.getOrDefault(itemNo, List.of()));
+            });
+            publish();
+            log.info("Best sellers built from {} units sold over {} categories", sketch.total(), byCategory.size());
+        }
+    }
+
+    private void count(List<OrderDelta> deltas) {
+        Map<Long, Integer> signs = new HashMap<>();
+        deltas.forEach(delta -> signs.merge(delta.orderId, delta.sign, Integer::sum));
+        signs.values().removeIf(sign -> sign == 0);
+        if (signs.isEmpty()) {
+            return;
+        }
+
+        // an order line repeats once per category of its item
+        Map<Long, Line> lines = new LinkedHashMap<>();
+        jdbcTemplate.query(ORDER_LINES, new MapSqlParameterSource("orderIds", signs.keySet()), row -> {
+            long orderItemId = row.getLong("order_item_id");
+            Line line = lines.get(orderItemId);
+            if (line == null) {
+                line = new Line(row.getLong("order_id"), row.getString("item_number"), row.getLong("quantity"), new ArrayList<>());
+                lines.put(orderItemId, line);
+            }
+            String category = row.getString("category");
+            if (category != null) {
+                line.categories.add(normalize(category));
+            }
+        });
+
+        for (Line line : lines.values()) {
+            long estimate = sketch.add(line.itemNo, signs.get(line.orderId) * line.quantity);
+            offer(line.itemNo, estimate, line.categories);
+        }
+    }
+
+    private void offer(String itemNo, long estimate, List<String> categories) {
+        overall.offer(itemNo, estimate);
+        for (String category : categories) {
+            byCategory.computeIfAbsent(category, key -> new Leaderboard(capacity)).offer(itemNo, estimate);
+        }
+    }
+
+    private void publish() {
+        // other items' counts move the shared counters too, refresh every kept item before ranking
+        List<BestSeller> overallRanked = overall.ranked(sketch);
+        Map<String, List<BestSeller>> categoriesRanked = new HashMap<>();
+        byCategory.forEach((category, leaderboard) -> categoriesRanked.put(category, leaderboard.ranked(sketch)));
+        published = new Published(overallRanked, categoriesRanked, sketch.total(), sketch.errorBound());
+    }
+
+    private static String normalize(String category) {
+        return category == null ? "" : category.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record OrderDelta(Long orderId, int sign) {
+    }
+
+    private record Line(long orderId, String itemNo, long quantity, List<String> categories) {
+    }
+
+    private record Published(List<BestSeller> overall, Map<String, List<BestSeller>> byCategory,
+                             long totalUnits, long errorBound) {
+    }
+
+    // the top items by estimate, the weakest on top of a min-heap so a stronger newcomer evicts it in O(log n)
+    private static class Leaderboard {
+        private final int capacity;
+        private final Map<String, Entry> entries = new HashMap<>();
+        private final PriorityQueue<Entry> heap = new PriorityQueue<>(
+                Comparator.comparingLong((Entry entry) -> entry.count).thenComparing(entry -> entry.itemNo));
+
+        Leaderboard(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void offer(String itemNo, long estimate) {
+            Entry entry = entries.get(itemNo);
+            if (entry != null) {
+                heap.remove(entry);
+                if (estimate <= 0) {
+                    entries.remove(itemNo);
+                    return;
+                }
+                entry.count = estimate;
+                heap.add(entry);
+                return;
+            }
+            if (estimate <= 0) {
+                return;
+            }
+            if (entries.size() >= capacity) {
+                if (heap.peek().count >= estimate) {
+                    return;
+                }
+                entries.remove(heap.poll().itemNo);
+            }
+            entry = new Entry(itemNo, estimate);
+            entries.put(itemNo, entry);
+            heap.add(entry);
+        }
+
+        List<BestSeller> ranked(CountMinSketch sketch) {
+            heap.clear();
+            entries.values().removeIf(entry -> (entry.count = sketch.estimate(entry.itemNo)) <= 0);
+            heap.addAll(entries.values());
+
+            List<Entry> sorted = new ArrayList<>(entries.values());
+            sorted.sort(Comparator.comparingLong((Entry entry) -> -entry.count).thenComparing(entry -> entry.itemNo));
+            List<BestSeller> ranked = new ArrayList<>(sorted.size());
+            for (Entry entry : sorted) {
+                ranked.add(new BestSeller(entry.itemNo, entry.count));
+            }
+            return List.copyOf(ranked);
+        }
+
+        void clear() {
+            entries.clear();
+            heap.clear();
+        }
+    }
+
+    private static class Entry {
+        private final String itemNo;
+        private long count;
+
+        Entry(String itemNo, long count) {
+            this.itemNo = itemNo;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package onlineshopping.sales;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Count-min sketch (Cormode and Muthukrishnan): depth rows of width counters, a key adds to one counter per row and
+ * its estimate is the smallest of them. Memory is fixed whatever the number of keys, an estimate never falls below
+ * the true count and overshoots it by more than e / width of the total only with probability e^-depth.
+ * Counts may go down again as long as no key's true count goes negative. Not thread safe.
+ */
+public class CountMinSketch {
+
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private final long[][] counters;
+    private final int mask;
+    private long total;
+
+    public CountMinSketch(int width, int depth) {
+        // power of two, so the column of a hash is a mask instead of a modulo
+        int columns = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.counters = new long[Math.max(1, depth)][columns];
+        this.mask = columns - 1;
+    }
+
+    // adds the count and returns the new estimate
+    public long add(String key, long count) {
+        long hash = hash(key);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < counters.length; row++) {
+            int column = column(hash, row);
+            counters[row][column] += count;
+            estimate = Math.min(estimate, counters[row][column]);
+        }
+        total += count;
+        return Math.max(0, estimate);
+    }
+
+    public long estimate(String key) {
+        long hash = hash(key);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < counters.length; row++) {
+            estimate = Math.min(estimate, counters[row][column(hash, row)]);
+        }
+        return Math.max(0, estimate);
+    }
+
+    public long total() {
+        return total;
+    }
+
+    // the overshoot an estimate stays under with probability 1 - e^-depth
+    public long errorBound() {
+        return (long) Math.ceil(Math.E / counters[0].length * total);
+    }
+
+    public double confidence() {
+        return 1 - Math.exp(-counters.length);
+    }
+
+    public void clear() {
+        for (long[] row : counters) {
+            Arrays.fill(row, 0);
+        }
+        total = 0;
+    }
+
+    private int column(long hash, int row) {
+        // one multiply-xorshift mix per row gives independent-enough hashes from a single 64-bit hash
+        long mixed = (hash + (row + 1) * SEED) * 0xBF58476D1CE4E5B9L;
+        mixed ^= mixed >>> 31;
+        mixed *= 0x94D049BB133111EBL;
+        mixed ^= mixed >>> 29;
+        return (int) mixed & mask;
+    }
+
+    // 64-bit FNV-1a over the UTF-8 bytes with a murmur finalizer; keys sharing a String.hashCode would share every row
+    private static long hash(String key) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,352 @@
+package onlineshopping.sales;
+
+import lombok.extern.slf4j.Slf4j;
+import onlineshopping.constants.CubeDimension;
+import onlineshopping.constants.Granularity;
+import onlineshopping.constants.PaymentMethod;
+import onlineshopping.entity.SalesCubeCell;
+import onlineshopping.exc.HandleExceptions;
+import onlineshopping.history.OrderStatusChangedEvent;
+import onlineshopping.repo.SalesCubeRepo;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Sales cube: money, units and orders per time bucket (hour, day, week, month) for all sales, per item category,
+ * per item type and per payment method, so drill-down charts read a handful of precomputed rows.
+ * Checkouts, cancellations and payments append a row to sales_cube_deltas in their own transaction, and the cube
+ * is written behind: every flush, on whichever node, claims a batch of queued rows, folds them into cell deltas
+ * and applies them as one batch of upserts, in one transaction, so checkouts never wait on the hot cells of the
+ * current hour and a node that dies loses nothing. A rebuild recomputes the cube from orders and transactions and
+ * discards the queued rows it has counted, for every node at once; it also runs at startup when the cube is empty.
+ */
+@Slf4j
+@Component
+public class SalesCube {
+
+    private static final int MAX_BUCKETS = 1000;
+    private static final int FLUSH_BATCH = 5000;
+
+    private static final String ENQUEUE =
+            "INSERT INTO sales_cube_deltas (order_id, sign, payment_method, amount, paid_at) VALUES (?, ?, ?, ?, ?)";
+    // skip locked, so nodes flushing at once each take their own rows
+    private static final String CLAIM =
+            "DELETE FROM sales_cube_deltas WHERE delta_id IN (SELECT delta_id FROM sales_cube_deltas " +
+                    "ORDER BY delta_id LIMIT ? FOR UPDATE SKIP LOCKED) " +
+                    "RETURNING order_id, sign, payment_method, amount, paid_at";
+
+    private static final String UPSERT_CELL =
+            "INSERT INTO sales_cube (granularity, dimension, dimension_value, bucket_start, sales, units, orders) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?) " +
+                    "ON CONFLICT (granularity, dimension, dimension_value, bucket_start) DO UPDATE SET " +
+                    "sales = sales_cube.sales + EXCLUDED.sales, units = sales_cube.units + EXCLUDED.units, " +
+                    "orders = sales_cube.orders + EXCLUDED.orders";
+
+    private static final String ORDER_LINES =
+            "SELECT oi.order_id, o.date_created, oi.order_item_id, oi.quantity, " +
+                    "oi.quantity * COALESCE(oi.unit_price, CASE WHEN i.discount > 0 THEN i.price - i.discount WHEN i.discount = 0 THEN i.price ELSE 0 END) AS amount, " +
+                    "i.type, c.size AS category " +
+                    "FROM order_item oi " +
+                    "JOIN orders o ON o.order_id = oi.order_id " +
+                    "JOIN items i ON i.item_id = oi.item_id " +
+                    "LEFT JOIN item_categories c ON c.item_id = i.item_id " +
+                    "WHERE oi.order_id IN (:orderIds)";
+
+    // the rebuild reads every live order line once per granularity
+    private static final String LIVE_LINES =
+            "WITH lines AS (SELECT o.order_id, o.date_created, oi.quantity, i.item_id, COALESCE(i.type, '') AS type, " +
+                    "oi.quantity * COALESCE(oi.unit_price, CASE WHEN i.discount > 0 THEN i.price - i.discount WHEN i.discount = 0 THEN i.price ELSE 0 END) AS amount " +
+                    "FROM order_item oi JOIN orders o ON o.order_id = oi.order_id JOIN items i ON i.item_id = oi.item_id " +
+                    "WHERE o.date_created IS NOT NULL AND (o.status IS NULL OR o.status <> 'canceled')), " +
+                    "g(granularity) AS (VALUES ('hour'), ('day'), ('week'), ('month')) ";
+    // transactions only keep their date, so rebuilt payments land in the first hour of their day
+    private static final String[] REBUILD = {
+            "DELETE FROM sales_cube_deltas",
+            "DELETE FROM sales_cube",
+            LIVE_LINES +
+                    "INSERT INTO sales_cube (granularity, dimension, dimension_value, bucket_start, sales, units, orders) " +
+                    "SELECT g.granularity, 'all', '', date_trunc(g.granularity, l.date_created), SUM(l.amount), SUM(l.quantity), COUNT(DISTINCT l.order_id) " +
+                    "FROM lines l CROSS JOIN g GROUP BY 1, 2, 3, 4",
+            LIVE_LINES +
+                    "INSERT INTO sales_cube (granularity, dimension, dimension_value, bucket_start, sales, units, orders) " +
+                    "SELECT g.granularity, 'type', l.type, date_trunc(g.granularity, l.date_created), SUM(l.amount), SUM(l.quantity), COUNT(DISTINCT l.order_id) " +
+                    "FROM lines l CROSS JOIN g GROUP BY 1, 2, 3, 4",
+            LIVE_LINES +
+                    "INSERT INTO sales_cube (granularity, dimension, dimension_value, bucket_start, sales, units, orders) " +
+                    "SELECT g.granularity, 'category', c.category, date_trunc(g.granularity, l.date_created), SUM(l.amount), SUM(l.quantity), COUNT(DISTINCT l.order_id) " +
+                    "FROM lines l JOIN (SELECT DISTINCT item_id, size AS category FROM item_categories WHERE size IS NOT NULL) c ON c.item_id = l.item_id " +
+                    "CROSS JOIN g GROUP BY 1, 2, 3, 4",
+            "INSERT INTO sales_cube (granularity, dimension, dimension_value, bucket_start, sales, units, orders) " +
+                    "SELECT g.granularity, 'payment', COALESCE(t.payment_method, 'UNKNOWN'), date_trunc(g.granularity, t.timestamp), SUM(t.amount), 0, COUNT(*) " +
+                    "FROM transaction t CROSS JOIN (VALUES ('hour'), ('day'), ('week'), ('month')) g(granularity) " +
+                    "WHERE t.timestamp IS NOT NULL GROUP BY 1, 2, 3, 4"
+    };
+
+    private final SalesCubeRepo cubeRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate rebuildTemplate;
+
+    public SalesCube(SalesCubeRepo cubeRepo, JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.cubeRepo = cubeRepo;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // one snapshot for every statement, so the queued rows it discards are exactly the ones it counts
+        this.rebuildTemplate = new TransactionTemplate(transactionManager);
+        this.rebuildTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    // placed orders count, canceled ones are taken back out; queued in the transaction that changed the status
+    @EventListener
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        int sign = event.salesDelta();
+        if (sign == 0) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(event.getOrderIds().size());
+        for (Long orderId : event.getOrderIds()) {
+            rows.add(new Object[]{orderId, sign, null, 0, null});
+        }
+        jdbcTemplate.batchUpdate(ENQUEUE, rows);
+    }
+
+    // called in the transaction that records the payment, queued with it
+    public void paid(PaymentMethod paymentMethod, double amount) {
+        jdbcTemplate.update(ENQUEUE, null, 1, paymentMethod == null ? "UNKNOWN" : paymentMethod.name(), amount,
+                Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    /**
+     * Cells of one granularity and dimension between two times, oldest first. Without a value every value of the
+     * dimension is returned, without a start the last few buckets (a day of hours, a month of days, a year of
+     * weeks or months) are returned.
+     */
+    public List<SalesCubeCell> series(String granularityName, String dimensionName, String value,
+                                      LocalDateTime from, LocalDateTime to) {
+        Granularity granularity = parse(Granularity.class, granularityName);
+        CubeDimension dimension = parse(CubeDimension.class, dimensionName);
+        LocalDateTime end = granularity.truncate(to == null ? LocalDateTime.now() : to);
+        LocalDateTime start = from == null ? lastBuckets(granularity, end) : granularity.truncate(from);
+        if (start.isAfter(end)) {
+            throw new HandleExceptions("The start of the range is after its end");
+        }
+        if (countBuckets(granularity, start, end) > MAX_BUCKETS) {
+            throw new HandleExceptions("At most " + MAX_BUCKETS + " buckets can be read at once, use a coarser granularity");
+        }
+        if (dimension == CubeDimension.all) {
+            return cubeRepo.findSeries(granularity.name(), dimension.name(), "", start, end);
+        }
+        if (value == null || value.isBlank()) {
+            return cubeRepo.findSeries(granularity.name(), dimension.name(), start, end);
+        }
+        return cubeRepo.findSeries(granularity.name(), dimension.name(), value, start, end);
+    }
+
+    @Scheduled(fixedDelayString = "${sales.cube.flush-interval:PT5S}")
+    public void flush() {
+        try {
+            Integer claimed;
+            do {
+                // the claimed rows come back if folding them fails, the transaction rolls back as a whole
+                claimed = transactionTemplate.execute(status -> flushBatch());
+            } while (claimed != null && claimed == FLUSH_BATCH);
+        } catch (RuntimeException e) {
+            log.error("Sales cube flush failed, the queued deltas are kept for the next one", e);
+        }
+    }
+
+    public void rebuild() {
+        rebuildTemplate.executeWithoutResult(status -> {
+            // taken before the first query fixes the snapshot, and waited for by any flush in progress
+            jdbcTemplate.execute("LOCK TABLE sales_cube IN EXCLUSIVE MODE");
+            for (String statement : REBUILD) {
+                jdbcTemplate.update(statement);
+            }
+        });
+        log.info("Sales cube rebuilt from orders and transactions");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIfEmpty() {
+        if (cubeRepo.count() == 0) {
+            rebuild();
+        }
+    }
+
+    private int flushBatch() {
+        // a rebuild holds this lock for its whole transaction, so a flush never folds rows the rebuild also counts
+        jdbcTemplate.execute("LOCK TABLE sales_cube IN ROW EXCLUSIVE MODE");
+        List<OrderDelta> orders = new ArrayList<>();
+        List<PaymentDelta> payments = new ArrayList<>();
+        jdbcTemplate.query(CLAIM, row -> {
+            long orderId = row.getLong("order_id");
+            if (!row.wasNull()) {
+                orders.add(new OrderDelta(orderId, row.getInt("sign")));
+            } else {
+                Timestamp paidAt = row.getTimestamp("paid_at");
+                payments.add(new PaymentDelta(row.getString("payment_method"), row.getInt("sign") * row.getDouble("amount"),
+                        paidAt == null ? LocalDateTime.now() : paidAt.toLocalDateTime()));
+            }
+        }, FLUSH_BATCH);
+        if (orders.isEmpty() && payments.isEmpty()) {
+            return 0;
+        }
+        Map<SalesCubeCell.Key, double[]> cells = new HashMap<>();
+        addOrders(cells, orders);
+        addPayments(cells, payments);
+        write(cells);
+        return orders.size() + payments.size();
+    }
+
+    private void addOrders(Map<SalesCubeCell.Key, double[]> cells, List<OrderDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        Set<Long> orderIds = new HashSet<>();
+        deltas.forEach(delta -> orderIds.add(delta.orderId));
+
+        Map<Long, OrderLines> lines = new HashMap<>();
+        namedJdbcTemplate.query(ORDER_LINES, new MapSqlParameterSource("orderIds", orderIds), row -> {
+            Timestamp dateCreated = row.getTimestamp("date_created");
+            if (dateCreated == null) {
+                return;
+            }
+            LocalDateTime placedAt = dateCreated.toLocalDateTime();
+            OrderLines order = lines.computeIfAbsent(row.getLong("order_id"), id -> new OrderLines(placedAt));
+            long orderItemId = row.getLong("order_item_id");
+            if (order.lineIds.add(orderItemId)) {
+                order.amount += row.getDouble("amount");
+                order.units += row.getLong("quantity");
+                String type = row.getString("type");
+                order.byType(type == null ? "" : type, row.getDouble("amount"), row.getLong("quantity"));
+            }
+            String category = row.getString("category");
+            if (category != null && order.categoryLines.computeIfAbsent(category, key -> new HashSet<>()).add(orderItemId)) {
+                order.byCategory(category, row.getDouble("amount"), row.getLong("quantity"));
+            }
+        });
+
+        for (OrderDelta delta : deltas) {
+            OrderLines order = lines.get(delta.orderId);
+            if (order == null) {
+                continue;
+            }
+            for (Granularity granularity : Granularity.values()) {
+                LocalDateTime bucket = granularity.truncate(order.placedAt);
+                add(cells, granularity, CubeDimension.all, "", bucket, delta.sign, order.amount, order.units);
+                order.types.forEach((type, totals) ->
+                        add(cells, granularity, CubeDimension.type, type, bucket, delta.sign, totals[0], (long) totals[1]));
+                order.categories.forEach((category, totals) ->
+                        add(cells, granularity, CubeDimension.category, category, bucket, delta.sign, totals[0], (long) totals[1]));
+            }
+        }
+    }
+
+    private static void addPayments(Map<SalesCubeCell.Key, double[]> cells, List<PaymentDelta> deltas) {
+        for (PaymentDelta delta : deltas) {
+            for (Granularity granularity : Granularity.values()) {
+                add(cells, granularity, CubeDimension.payment, delta.paymentMethod, granularity.truncate(delta.paidAt), 1, delta.amount, 0);
+            }
+        }
+    }
+
+    private static void add(Map<SalesCubeCell.Key, double[]> cells, Granularity granularity, CubeDimension dimension,
+                            String value, LocalDateTime bucket, int sign, double sales, long units) {
+        double[] cell = cells.computeIfAbsent(
+                new SalesCubeCell.Key(granularity.name(), dimension.name(), value, bucket), key -> new double[3]);
+        cell[0] += sign * sales;
+        cell[1] += sign * units;
+        cell[2] += sign;
+    }
+
+    private void write(Map<SalesCubeCell.Key, double[]> cells) {
+        // a fixed key order, so two nodes flushing at once lock the cells in the same order
+        List<Map.Entry<SalesCubeCell.Key, double[]>> sorted = new ArrayList<>(cells.entrySet());
+        sorted.sort(Map.Entry.comparingByKey(Comparator.comparing(SalesCubeCell.Key::getGranularity)
+                .thenComparing(SalesCubeCell.Key::getDimension)
+                .thenComparing(SalesCubeCell.Key::getValue)
+                .thenComparing(SalesCubeCell.Key::getBucketStart)));
+
+        List<Object[]> arguments = new ArrayList<>(sorted.size());
+        for (Map.Entry<SalesCubeCell.Key, double[]> cell : sorted) {
+            SalesCubeCell.Key key = cell.getKey();
+            double[] totals = cell.getValue();
+            arguments.add(new Object[]{key.getGranularity(), key.getDimension(), key.getValue(),
+                    Timestamp.valueOf(key.getBucketStart()), totals[0], (long) totals[1], (long) totals[2]});
+        }
+        jdbcTemplate.batchUpdate(UPSERT_CELL, arguments);
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String name) {
+        try {
+            return Enum.valueOf(type, name == null ? "" : name.trim().toLowerCase());
+        } catch (IllegalArgumentException e) {
+            throw new HandleExceptions("Unknown " + type.getSimpleName().toLowerCase() + " " + name
+                    + ", expected one of " + Arrays.toString(type.getEnumConstants()));
+        }
+    }
+
+    private static LocalDateTime lastBuckets(Granularity granularity, LocalDateTime end) {
+        return switch (granularity) {
+            case hour -> end.minusHours(23);
+            case day -> end.minusDays(29);
+            case week -> end.minusWeeks(11);
+            case month -> end.minusMonths(11);
+        };
+    }
+
+    private static int countBuckets(Granularity granularity, LocalDateTime start, LocalDateTime end) {
+        int buckets = 0;
+        for (LocalDateTime bucket = start; !bucket.isAfter(end) && buckets <= MAX_BUCKETS; bucket = granularity.next(bucket)) {
+            buckets++;
+        }
+        return buckets;
+    }
+
+    private record OrderDelta(Long orderId, int sign) {
+    }
+
+    private record PaymentDelta(String paymentMethod, double amount, LocalDateTime paidAt) {
+    }
+
+    // an order's lines folded per type and category, the join repeats a line once per category of its item
+    private static class OrderLines {
+        final LocalDateTime placedAt;
+        final Set<Long> lineIds = new HashSet<>();
+        final Map<String, Set<Long>> categoryLines = new HashMap<>();
+        final Map<String, double[]> types = new HashMap<>();
+        final Map<String, double[]> categories = new HashMap<>();
+        double amount;
+        long units;
+
+        OrderLines(LocalDateTime placedAt) {
+            this.placedAt = placedAt;
+        }
+
+        void byType(String type, double amount, long units) {
+            double[] totals = types.computeIfAbsent(type, key -> new double[2]);
+            totals[0] += amount;
+            totals[1] += units;
+        }
+
+        void byCategory(String category, double amount, long units) {
+            double[] totals = categories.computeIfAbsent(category, key -> new double[2]);
+            totals[0] += amount;
+            totals[1] += units;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package onlineshopping.sales;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import onlineshopping.constants.PaymentMethod;
+import onlineshopping.constants.TransactionType;
+import onlineshopping.exc.SearchExceptions;
+import onlineshopping.model.SalesPerMonthDTO;
+import onlineshopping.pay.entity.Transaction;
+import onlineshopping.repo.MonthlySalesRepo;
+import onlineshopping.repo.OrderRepo;
+import onlineshopping.repo.TransactionRepo;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Monthly sales rollup, one row per month and payment method. Transactions are written through {@link #record}
+ * so the rollup row moves in the same database transaction as the insert and can never disagree with it,
+ * and the sales-per-month report reads a few precomputed rows instead of grouping the whole transaction table.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SalesRollup {
+
+    private static final String UNKNOWN_METHOD = "UNKNOWN";
+
+    private final TransactionRepo transactionRepo;
+    private final OrderRepo orderRepo;
+    private final MonthlySalesRepo monthlySalesRepo;
+    private final SalesCube salesCube;
+
+    @Transactional
+    public Transaction record(Transaction transaction) {
+        Transaction saved = transactionRepo.save(transaction);
+        if (saved.getTimestamp() != null) {
+            String paymentMethod = saved.getPaymentMethod() == null ? UNKNOWN_METHOD : saved.getPaymentMethod().name();
+            monthlySalesRepo.add(YearMonth.from(saved.getTimestamp()).toString(), paymentMethod, saved.getAmount());
+            salesCube.paid(saved.getPaymentMethod(), saved.getAmount());
+        }
+        return saved;
+    }
+
+    // a payment the provider accepted for the order, recorded as a purchase
+    @Transactional
+    public void recordPayment(String orderNo, PaymentMethod paymentMethod, double amount, String transactionId) {
+        Long orderId = orderRepo.findIdByOrderNo(orderNo)
+                .orElseThrow(() -> new SearchExceptions("Oops!!! No order matches"));
+        record(Transaction.builder()
+                .type(TransactionType.PURCHASE)
+                .paymentMethod(paymentMethod)
+                .amount(amount)
+                .timestamp(LocalDate.now())
+                .description("Payment for order " + orderNo)
+                .transactionId(transactionId)
+                .order(orderRepo.getReferenceById(orderId))
+                .build());
+    }
+
+    public List<SalesPerMonthDTO> salesPerMonth() {
+        List<SalesPerMonthDTO> salesPerMonth = new ArrayList<>();
+        for (Object[] row : monthlySalesRepo.findSalesPerMonth()) {
+            salesPerMonth.add(new SalesPerMonthDTO((String) row[0], ((Number) row[1]).doubleValue()));
+        }
+        return salesPerMonth;
+    }
+
+    // the first start with the rollup folds the transactions recorded before it, later starts find it filled
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfill() {
+        monthlySalesRepo.lock();
+        if (monthlySalesRepo.count() > 0 || transactionRepo.count() == 0) {
+            return;
+        }
+        int rows = monthlySalesRepo.backfill();
+        log.info("Sales rollup built from existing transactions, {} rows", rows);
+    }
+}
@@ -0,0 +1,189 @@
+package onlineshopping.sales;
+
+import lombok.extern.slf4j.Slf4j;
+import onlineshopping.entity.Order;
+import onlineshopping.entity.OrderItem;
+import onlineshopping.model.OrderTotalsView;
+import onlineshopping.repo.OrderRepo;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Dashboard totals (money, orders, units sold, canceled orders excluded) kept in memory and moved by every
+ * committed checkout and cancellation, so reading them is O(1) instead of a full-table SUM.
+ * They are reconciled against the database on a schedule: updates from other nodes or a missed commit
+ * only drift the totals until the next reconcile. Updates keep landing while the reconcile queries: the reconcile
+ * fixes its database snapshot while no commit is in flight, and whatever commits afterwards is added on top of
+ * the result, so a busy node is reconciled on every run like an idle one.
+ */
+@Slf4j
+@Component
+public class SalesTotals {
+
+    private final OrderRepo orderRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTemplate;
+
+    private final DoubleAdder sales = new DoubleAdder();
+    private final LongAdder orders = new LongAdder();
+    private final LongAdder products = new LongAdder();
+    // what updates added since the running reconcile started its query
+    private final DoubleAdder salesSince = new DoubleAdder();
+    private final LongAdder ordersSince = new LongAdder();
+    private final LongAdder productsSince = new LongAdder();
+    // committing transactions hold the read lock from before their commit until their update is applied, the
+    // reconcile takes the write lock to fix its snapshot and for the reset only
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean loaded;
+
+    public SalesTotals(OrderRepo orderRepo, JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.orderRepo = orderRepo;
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTemplate.setReadOnly(true);
+    }
+
+    // called inside the checkout transaction, the totals move once it commits
+    public void placed(List<Order> placedOrders) {
+        double money = 0;
+        long units = 0;
+        for (Order order : placedOrders) {
+            money += order.getTotalPrice();
+            for (OrderItem orderItem : order.getOrderItems()) {
+                units += orderItem.getQuantity();
+            }
+        }
+        apply(placedOrders.size(), money, units);
+    }
+
+    // called inside the transaction that canceled the orders, before it commits
+    public void canceled(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        OrderTotalsView canceled = orderRepo.findTotals(orderIds);
+        apply(-canceled.getOrders(), -canceled.getSales(), -canceled.getProducts());
+    }
+
+    public double sales() {
+        ensureLoaded();
+        return sales.sum();
+    }
+
+    public long orders() {
+        ensureLoaded();
+        return orders.sum();
+    }
+
+    public long products() {
+        ensureLoaded();
+        return products.sum();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${sales.totals.reconcile-interval:PT10M}", fixedDelayString = "${sales.totals.reconcile-interval:PT10M}")
+    public synchronized void reconcile() {
+        OrderTotalsView totals = snapshotTemplate.execute(status -> {
+            lock.writeLock().lock();
+            try {
+                // every commit so far has been applied and none is in flight: the first statement fixes a snapshot
+                // holding exactly what the totals hold, later commits are counted since
+                jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+                salesSince.reset();
+                ordersSince.reset();
+                productsSince.reset();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return orderRepo.findTotals();
+        });
+
+        lock.writeLock().lock();
+        try {
+            long orderDrift = orders.sum() - ordersSince.sum() - totals.getOrders();
+            double drift = sales.sum() - salesSince.sum() - totals.getSales();
+            if (loaded && (orderDrift != 0 || Math.abs(drift) > 0.005)) {
+                log.info("Sales totals drifted by {} orders and {} in sales, reset from the database", orderDrift, drift);
+            }
+            reset(sales, totals.getSales() + salesSince.sum());
+            reset(orders, totals.getOrders() + ordersSince.sum());
+            reset(products, totals.getProducts() + productsSince.sum());
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            reconcile();
+        }
+    }
+
+    private static void reset(DoubleAdder adder, double value) {
+        adder.reset();
+        adder.add(value);
+    }
+
+    private static void reset(LongAdder adder, long value) {
+        adder.reset();
+        adder.add(value);
+    }
+
+    private void apply(long orderCount, double money, long units) {
+        Runnable update = () -> {
+            orders.add(orderCount);
+            sales.add(money);
+            products.add(units);
+            ordersSince.add(orderCount);
+            salesSince.add(money);
+            productsSince.add(units);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                private boolean locked;
+
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    lock.readLock().lock();
+                    locked = true;
+                }
+
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (locked) {
+                        lock.readLock().unlock();
+                    }
+                }
+            });
+        } else {
+            lock.readLock().lock();
+            try {
+                update.run();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package onlineshopping.service.base;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface ExportService {
+
+    void exportOrders(OutputStream out, String format) throws IOException;
+
+    void exportUsers(OutputStream out, String format) throws IOException;
+
+    void exportProducts(OutputStream out, String format) throws IOException;
+}
@@ -1,21 +1,33 @@
 package onlineshopping.service.base;
 
 import onlineshopping.entity.Item;
+import onlineshopping.model.CursorPageResponse;
+import onlineshopping.model.FacetSearchResponse;
+import onlineshopping.model.ItemResponse;
+import onlineshopping.model.OrderStatusResult;
+import onlineshopping.model.PageResponse;
 import onlineshopping.model.SalesPerMonthDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 
 import java.util.List;
+import java.util.Map;
 
 public interface SearchBaseService {
 
-    List<String> findItemNames(String queryStr);
+    List<String> findItemNames(String queryStr, int limit);
 
     List<Item> findFoundItems();
 
     Item findUniqueItem(String queryString);
 
+    ItemResponse findItemDetail(String itemNo);
+
+    PageResponse<Item> searchItems(String queryStr, int pageNumber, int pageSize);
+
+    FacetSearchResponse findFacetedItems(Map<String, List<String>> filters, Double minPrice, Double maxPrice, int pageNumber, int pageSize);
+
     Page<Object[]> findAllUsers(Pageable pageable);
 
     Page<Object[]> findOrders(Pageable pageable);
@@ -30,9 +42,19 @@ public interface SearchBaseService {
 
     Page<Object[]> findProducts(Pageable pageable);
 
+    CursorPageResponse<Object[]> findAllUsers(String cursor, int pageSize, boolean withTotal);
+
+    CursorPageResponse<Object[]> findOrders(String cursor, int pageSize, boolean withTotal);
+
+    CursorPageResponse<Object[]> findLatestOrders(String cursor, int pageSize, boolean withTotal);
+
+    CursorPageResponse<Object[]> findProducts(String cursor, int pageSize, boolean withTotal);
+
     List<SalesPerMonthDTO> getSalesPerMonth();
 
     ResponseEntity<String> processOrderStatus(String orderNo, String orderStatus);
 
+    List<OrderStatusResult> processOrderStatuses(List<String> orderNos, String orderStatus);
+
     ResponseEntity<String> cancelOrder(String orderNo);
 }
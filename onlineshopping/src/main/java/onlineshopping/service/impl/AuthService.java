@@ -8,6 +8,7 @@ import onlineshopping.entity.Otp;
 import onlineshopping.exc.HandleExceptions;
 import onlineshopping.exc.InvalidOtpException;
 import onlineshopping.exc.SearchExceptions;
+import onlineshopping.id.IdGenerator;
 import onlineshopping.jwt.service.JwtService;
 import onlineshopping.model.AuthRequest;
 import onlineshopping.model.AuthResponse;
@@ -29,7 +30,6 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
-import java.util.Random;
 
 @Service
 @RequiredArgsConstructor
@@ -37,6 +37,7 @@ import java.util.Random;
 public class AuthService implements BaseService {
 
     private final UserRepo userRepo;
+    private final IdGenerator idGenerator;
     private final JwtService jwtService;
     private  final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authenticationManager;
@@ -63,7 +64,7 @@ public class AuthService implements BaseService {
             } else {
                 customer.setRole(UserRole.CUSTOMER);
             }
-            customer.setEnrollNumber(generateUniqueNumber());
+            customer.setEnrollNumber(idGenerator.nextCode());
             userRepo.save(customer);
 
             // otp
@@ -98,18 +99,6 @@ public class AuthService implements BaseService {
         }
     }
 
-    public static String generateUniqueNumber() {
-        int orderNumberLength = 15;
-        StringBuilder builder = new StringBuilder();
-
-        Random random = new Random();
-        for (int i=0; i < orderNumberLength; i++){
-            int digit = random.nextInt(10);
-            builder.append(digit);
-        }
-        return "222"+builder;
-    }
-
     @Override
     public ResponseEntity<AuthResponse> authenticate(AuthRequest request) {
         try {
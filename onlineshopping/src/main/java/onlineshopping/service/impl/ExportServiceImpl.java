@@ -0,0 +1,130 @@
+package onlineshopping.service.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import onlineshopping.exc.DatabaseAccessException;
+import onlineshopping.exc.HandleExceptions;
+import onlineshopping.repo.OrderItemRepo;
+import onlineshopping.repo.OrderRepo;
+import onlineshopping.repo.UserRepo;
+import onlineshopping.service.base.ExportService;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// rows are written to the response as they come off the cursor, nothing is collected in memory
+@Service
+@RequiredArgsConstructor
+public class ExportServiceImpl implements ExportService {
+
+    public static final String CSV = "csv";
+    public static final String NDJSON = "ndjson";
+
+    private static final List<String> ORDER_COLUMNS = List.of("orderNo", "customerName", "email", "billingAddress", "totalPrice", "status", "dateCreated");
+    private static final List<String> USER_COLUMNS = List.of("name", "email", "mobile", "enrollNumber", "dateCreated", "role");
+    private static final List<String> PRODUCT_COLUMNS = List.of("orderNo", "itemNo", "itemName", "quantity", "actualPrice", "discountPrice", "orderDate");
+
+    private final OrderRepo orderRepo;
+    private final UserRepo userRepo;
+    private final OrderItemRepo orderItemRepo;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportOrders(OutputStream out, String format) throws IOException {
+        try (Stream<Object[]> rows = orderRepo.streamOrders()) {
+            write(rows, ORDER_COLUMNS, out, format);
+        } catch (DataAccessException accessException) {
+            throw new DatabaseAccessException("Error: " + accessException.getMessage());
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportUsers(OutputStream out, String format) throws IOException {
+        try (Stream<Object[]> rows = userRepo.streamUsers()) {
+            write(rows, USER_COLUMNS, out, format);
+        } catch (DataAccessException accessException) {
+            throw new DatabaseAccessException("Error: " + accessException.getMessage());
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportProducts(OutputStream out, String format) throws IOException {
+        try (Stream<Object[]> rows = orderItemRepo.streamProducts()) {
+            write(rows, PRODUCT_COLUMNS, out, format);
+        } catch (DataAccessException accessException) {
+            throw new DatabaseAccessException("Error: " + accessException.getMessage());
+        }
+    }
+
+    public static void checkFormat(String format) {
+        if (!CSV.equals(format) && !NDJSON.equals(format)) {
+            throw new HandleExceptions("Unsupported export format: " + format);
+        }
+    }
+
+    private void write(Stream<Object[]> rows, List<String> columns, OutputStream out, String format) throws IOException {
+        checkFormat(format);
+        Iterator<Object[]> iterator = rows.iterator();
+        if (NDJSON.equals(format)) {
+            writeNdjson(iterator, columns, out);
+        } else {
+            writeCsv(iterator, columns, out);
+        }
+    }
+
+    private void writeNdjson(Iterator<Object[]> rows, List<String> columns, OutputStream out) throws IOException {
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            // one object per line, without Jackson's default space between root values
+            json.setRootValueSeparator(null);
+            while (rows.hasNext()) {
+                Object[] row = rows.next();
+                json.writeStartObject();
+                for (int i = 0; i < columns.size(); i++) {
+                    json.writeFieldName(columns.get(i));
+                    json.writeObject(row[i]);
+                }
+                json.writeEndObject();
+                json.writeRaw('\n');
+            }
+        }
+    }
+
+    private static void writeCsv(Iterator<Object[]> rows, List<String> columns, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(String.join(",", columns));
+        writer.write("\r\n");
+        while (rows.hasNext()) {
+            Object[] row = rows.next();
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(csvCell(row[i]));
+            }
+            writer.write("\r\n");
+        }
+        writer.flush();
+    }
+
+    private static String csvCell(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String cell = value.toString();
+        if (cell.indexOf(',') >= 0 || cell.indexOf('"') >= 0 || cell.indexOf('\n') >= 0 || cell.indexOf('\r') >= 0) {
+            return "\"" + cell.replace("\"", "\"\"") + "\"";
+        }
+        return cell;
+    }
+}
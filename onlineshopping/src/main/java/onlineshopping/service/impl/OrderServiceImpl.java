@@ -1,16 +1,29 @@
 package onlineshopping.service.impl;
 
 import lombok.RequiredArgsConstructor;
+import onlineshopping.audience.AudienceCounter;
+import onlineshopping.catalog.ItemChangedEvent;
 import onlineshopping.constants.Status;
 import onlineshopping.entity.*;
 import onlineshopping.exc.HandleExceptions;
 import onlineshopping.exc.SearchExceptions;
+import onlineshopping.history.OrderStatusLog;
+import onlineshopping.id.IdGenerator;
+import onlineshopping.inventory.InventoryLedger;
+import onlineshopping.inventory.StockHolds;
 import onlineshopping.model.CartItem;
+import onlineshopping.model.CheckoutItemView;
+import onlineshopping.model.InventoryStats;
+import onlineshopping.model.OrderRequest;
+import onlineshopping.model.OrderResponse;
 import onlineshopping.repo.*;
+import onlineshopping.retry.RetryOnConflict;
+import onlineshopping.sales.SalesTotals;
 import onlineshopping.service.base.OrderService;
-import org.springframework.http.HttpStatus;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -19,9 +32,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.List;
-import java.util.Objects;
-import java.util.Random;
+import java.util.*;
 
 
 @Service
@@ -30,76 +41,201 @@ public class OrderServiceImpl implements OrderService {
 
     private final UserRepo userRepo;
     private final OrderRepo orderRepo;
-    private final OrderItemRepo orderItemRepo;
-    private final OrderStatusRepo statusRepo;
     private final ItemRepo itemRepo;
+    private final InventoryLedger inventoryLedger;
+    private final StockHolds stockHolds;
+    private final IdGenerator idGenerator;
+    private final OrderStatusLog statusLog;
+    private final SalesTotals salesTotals;
+    private final AudienceCounter audienceCounter;
+    private final ApplicationEventPublisher eventPublisher;
 
 
+    // the whole cart becomes one order in one transaction, any failing line rolls everything back
     @Override
-    public ResponseEntity<String> processOrder(String email, String street, String region, CartItem item) {
-        try {
-            // Fetch customer
-            Customer customer = userRepo.findByEmail(email);
-            if (customer == null) {
-                throw new HandleExceptions("Oops! you need to have an account");
+    @Transactional
+    @RetryOnConflict
+    public String processOrder(String email, String street, String region, List<CartItem> cartItems, String idempotencyKey) {
+        // Fetch customer id and every cart item with one query each
+        Long customerId = findCustomerId(email);
+        Map<String, Integer> quantities = cartQuantities(cartItems);
+        Map<String, CheckoutItemView> items = findCheckoutItems(quantities.keySet());
+
+        Order order = buildOrder(customerId, street, region, cartItems, quantities, items);
+        // a second checkout under the same key fails on the unique index instead of placing the order again
+        order.setIdempotencyKey(idempotencyKey);
+
+        // order lines cascade from the order and go out as batched inserts
+        orderRepo.saveAndFlush(order);
+        statusLog.record(order.getOrderId(), null, Status.ongoing);
+        salesTotals.placed(List.of(order));
+        audienceCounter.bought(List.of(order));
+
+        // Stock rows are decremented last, in one batch, so their row locks are only held until commit
+        persistStock(items, quantities);
+        // the stock is only held until the order is paid
+        stockHolds.hold(List.of(order));
+        publishItemChanges(quantities);
+        return order.getOrderNo();
+    }
+
+    /**
+     * Group commit for the async checkout queue: every request that passes validation and the in-memory stock
+     * check becomes an order, and all of them are written with one flush and one stock batch. Requests that fail
+     * validation come back unsuccessful without affecting the others; a stock row that turns out short in the
+     * database rolls the whole batch back, the caller then places the orders one by one.
+     * The idempotency keys go on the orders like in processOrder, one per request, null for a request without.
+     */
+    @Transactional
+    @RetryOnConflict
+    public List<OrderResponse> processOrders(List<OrderRequest> orderRequests, List<String> idempotencyKeys) {
+        // one item query for the whole batch
+        Set<String> itemNos = new HashSet<>();
+        for (OrderRequest orderRequest : orderRequests) {
+            orderRequest.getCartItems().forEach(cartItem -> itemNos.add(cartItem.getItemNo()));
+        }
+        Map<String, CheckoutItemView> items = new HashMap<>();
+        for (CheckoutItemView item : itemRepo.findCheckoutItems(itemNos)) {
+            items.put(item.getItemNo(), item);
+        }
+
+        List<OrderResponse> responses = new ArrayList<>();
+        List<Order> orders = new ArrayList<>();
+        Map<String, Long> customerIds = new HashMap<>();
+        Map<String, Integer> totalQuantities = new LinkedHashMap<>();
+        for (int i = 0; i < orderRequests.size(); i++) {
+            OrderRequest orderRequest = orderRequests.get(i);
+            OrderResponse response = new OrderResponse();
+            response.setCustomerEmail(orderRequest.getEmail());
+            response.setBilling_address(orderRequest.getStreet() + " " + orderRequest.getRegion());
+            try {
+                Long customerId = customerIds.get(orderRequest.getEmail());
+                if (customerId == null) {
+                    customerId = findCustomerId(orderRequest.getEmail());
+                    customerIds.put(orderRequest.getEmail(), customerId);
+                }
+                Map<String, Integer> quantities = cartQuantities(orderRequest.getCartItems());
+                checkItemsExist(quantities.keySet(), items);
+
+                Order order = buildOrder(customerId, orderRequest.getStreet(), orderRequest.getRegion(),
+                        orderRequest.getCartItems(), quantities, items);
+                order.setIdempotencyKey(idempotencyKeys.get(i));
+                orders.add(order);
+                quantities.forEach((itemNo, quantity) -> totalQuantities.merge(itemNo, quantity, Integer::sum));
+                response.setOrderNo(order.getOrderNo());
+                response.setSuccessful(true);
+            } catch (HandleExceptions | SearchExceptions exception) {
+                response.setErrorMessage(exception.getMessage());
             }
+            responses.add(response);
+        }
+        if (orders.isEmpty()) {
+            return responses;
+        }
+
+        orderRepo.saveAll(orders);
+        orderRepo.flush();
+        statusLog.record(orders.stream().map(Order::getOrderId).toList(), null, Status.ongoing);
+        salesTotals.placed(orders);
+        audienceCounter.bought(orders);
+        persistStock(items, totalQuantities);
+        stockHolds.hold(orders);
+        publishItemChanges(totalQuantities);
+        return responses;
+    }
+
 
-            // Fetch item
-            Item items = itemRepo.findByItemNo(item.getItemNo());
-            if (items == null) {
-                throw new SearchExceptions("Invalid item number: " + item.getItemNo());
+    // the order a checkout committed under its Idempotency-Key, for a retry whose first run did not get to answer
+    public Optional<String> findOrderNo(String idempotencyKey) {
+        return orderRepo.findOrderNoByIdempotencyKey(idempotencyKey);
+    }
+
+    private Long findCustomerId(String email) {
+        return userRepo.findIdByEmail(email)
+                .orElseThrow(() -> new HandleExceptions("Oops! you need to have an account"));
+    }
+
+    // the same item can sit on several cart lines (other size or color), stock is taken per item
+    private static Map<String, Integer> cartQuantities(List<CartItem> cartItems) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (CartItem cartItem : cartItems) {
+            if (cartItem.getProductQuantity() <= 0) {
+                throw new HandleExceptions("Invalid quantity for item number: " + cartItem.getItemNo());
             }
+            quantities.merge(cartItem.getItemNo(), cartItem.getProductQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
 
-            // Calculate total price
-            double totalPrice = getTotalPrice(item, items);
-
-            // Create and save order
-            Order order = new Order();
-            order.setOrderNo(generateRandomOrderNumber());
-            order.setAddress(street + " " + region);
-            order.setCustomer(customer);
-            order.setTotalPrice(totalPrice);
-            orderRepo.save(order);
-
-            // Create and save order status
-            OrderStatus orderStatus = new OrderStatus();
-            orderStatus.setOrder_status(Status.ongoing.name());
-            orderStatus.setOrder(order);
-            statusRepo.save(orderStatus);
-
-            // Check and update item stock
-            int newQuantity = items.getCurrentQuantity() - item.getProductQuantity();
-            if (newQuantity < 0) {
-                throw new HandleExceptions("Insufficient stock for item number: " + item.getItemNo());
+    private Map<String, CheckoutItemView> findCheckoutItems(Set<String> itemNos) {
+        Map<String, CheckoutItemView> items = new HashMap<>();
+        for (CheckoutItemView item : itemRepo.findCheckoutItems(itemNos)) {
+            items.put(item.getItemNo(), item);
+        }
+        checkItemsExist(itemNos, items);
+        return items;
+    }
+
+    private static void checkItemsExist(Set<String> itemNos, Map<String, CheckoutItemView> items) {
+        for (String itemNo : itemNos) {
+            if (!items.containsKey(itemNo)) {
+                throw new SearchExceptions("Invalid item number: " + itemNo);
             }
+        }
+    }
 
-            items.setCurrentQuantity(newQuantity);
-            itemRepo.save(items);
+    private Order buildOrder(Long customerId, String street, String region, List<CartItem> cartItems,
+                             Map<String, Integer> quantities, Map<String, CheckoutItemView> items) {
+        // Turn oversells away in memory before any row gets locked
+        String shortItemNo = inventoryLedger.reserve(items, quantities);
+        if (shortItemNo != null) {
+            throw new HandleExceptions("Insufficient stock for item number: " + shortItemNo);
+        }
+
+        Order order = new Order();
+        order.setOrderNo(idGenerator.nextCode());
+        order.setAddress(street + " " + region);
+        order.setCustomer(userRepo.getReferenceById(customerId));
+
+        order.setStatus(Status.ongoing);
+
+        List<OrderItem> orderItems = new ArrayList<>();
+        double totalPrice = 0;
+        for (CartItem cartItem : cartItems) {
+            CheckoutItemView item = items.get(cartItem.getItemNo());
+            double unitPrice = getUnitPrice(item);
+            totalPrice += unitPrice * cartItem.getProductQuantity();
 
-            // Create and save order item
             OrderItem orderItem = new OrderItem();
-            orderItem.setItem(items);
-            orderItem.setQuantity(item.getProductQuantity());
-            orderItem.setSizes(item.getSizes());
-            orderItem.setColors(item.getColors());
+            orderItem.setItem(itemRepo.getReferenceById(item.getItemId()));
+            orderItem.setQuantity(cartItem.getProductQuantity());
+            orderItem.setUnitPrice(unitPrice);
+            orderItem.setSizes(cartItem.getSizes());
+            orderItem.setColors(cartItem.getColors());
             orderItem.setOrder(order);
-            orderItemRepo.save(orderItem);
-
-            return ResponseEntity.ok(order.getOrderNo());
+            orderItems.add(orderItem);
+        }
+        order.setOrderItems(orderItems);
+        order.setTotalPrice(totalPrice);
+        return order;
+    }
 
-        } catch (HandleExceptions | SearchExceptions exception) {
-            return ResponseEntity.badRequest().body(exception.getMessage());
-        } catch (Exception exception) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An unexpected error occurred.");
+    private void persistStock(Map<String, CheckoutItemView> items, Map<String, Integer> quantities) {
+        String shortItemNo = inventoryLedger.persist(items, quantities);
+        if (shortItemNo != null) {
+            throw new HandleExceptions("Insufficient stock for item number: " + shortItemNo);
         }
     }
 
+    private void publishItemChanges(Map<String, Integer> quantities) {
+        quantities.forEach((itemNo, quantity) -> eventPublisher.publishEvent(new ItemChangedEvent(itemNo, -quantity)));
+    }
 
-    private static double getTotalPrice(CartItem item, Item items) {
-        if (items == null) {
-            throw new HandleExceptions("Oops! Can't find that item");
-        }
+    public InventoryStats getInventoryStats() {
+        return inventoryLedger.stats();
+    }
 
+    private static double getUnitPrice(CheckoutItemView items) {
         double actualPrice = items.getActualPrice();
         double discountPrice = items.getDiscountPrice();
         double itemPrice = 0;
@@ -108,17 +244,18 @@ public class OrderServiceImpl implements OrderService {
         }else if (discountPrice == 0){
             itemPrice = actualPrice;
         }
-        return itemPrice * item.getProductQuantity();
+        return itemPrice;
     }
 
     @Override
     public ResponseEntity<String> publishItem(String itemName, List<String> sizes, List<String> colors, int stokeQuantity, float actualPrice, float discountPrice, String description, MultipartFile imageUrl, List<String> category, String type) {
             try {
-                String item_no = generateRandomAlphanumericItemNo();
+                String item_no = idGenerator.nextCode();
 
                 Item item = getItem(itemName,sizes,colors,stokeQuantity,actualPrice,discountPrice,description,imageUrl, item_no, category, type);
 
                 itemRepo.save(item);
+                eventPublisher.publishEvent(new ItemChangedEvent(item.getItemNo()));
                 return ResponseEntity.ok("publishing successfully");
 
             }catch (HandleExceptions exception){
@@ -197,33 +334,4 @@ public class OrderServiceImpl implements OrderService {
         }
     }
 */
-
-
-    private String generateRandomOrderNumber(){
-        int orderNumberLength = 5;
-        StringBuilder builder = new StringBuilder();
-
-        Random random = new Random();
-        for (int i=0; i < orderNumberLength; i++){
-            int digit = random.nextInt(10);
-            builder.append(digit);
-        }
-        return "555"+builder;
-    }
-
-    private String generateRandomAlphanumericItemNo() {
-        StringBuilder randomAlphanumericItemNo = new StringBuilder(5);
-
-        String alphanumeric = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
-
-        Random random = new Random();
-
-        for (int i = 0; i < 15; i++) {
-            int index = random.nextInt(alphanumeric.length());
-            char randomChar = alphanumeric.charAt(index);
-            randomAlphanumericItemNo.append(randomChar);
-        }
-
-        return randomAlphanumericItemNo.toString();
-    }
 }
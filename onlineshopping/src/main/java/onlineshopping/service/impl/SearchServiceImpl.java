@@ -1,47 +1,84 @@
 package onlineshopping.service.impl;
 
 import lombok.RequiredArgsConstructor;
+import onlineshopping.catalog.CatalogSnapshot;
+import onlineshopping.catalog.FacetIndex;
+import onlineshopping.catalog.FullTextIndex;
+import onlineshopping.catalog.ItemCache;
+import onlineshopping.catalog.ItemAutocomplete;
 import onlineshopping.constants.Status;
 import onlineshopping.entity.Item;
 import onlineshopping.entity.Order;
-import onlineshopping.entity.OrderStatus;
 import onlineshopping.exc.DatabaseAccessException;
 import onlineshopping.exc.HandleExceptions;
 import onlineshopping.exc.SearchExceptions;
+import onlineshopping.history.OrderStatusLog;
+import onlineshopping.inventory.StockHolds;
+import onlineshopping.model.CacheStats;
+import onlineshopping.model.CursorPageResponse;
+import onlineshopping.model.FacetSearchResponse;
+import onlineshopping.model.ItemResponse;
+import onlineshopping.model.PageResponse;
+import onlineshopping.model.KeysetCursor;
+import onlineshopping.model.OrderStatusResult;
+import onlineshopping.model.OrderStatusView;
+import onlineshopping.model.RetryStats;
 import onlineshopping.model.SalesPerMonthDTO;
+import onlineshopping.model.SingleFlightStats;
 import onlineshopping.repo.*;
+import onlineshopping.retry.ConflictRetryAspect;
+import onlineshopping.retry.RetryOnConflict;
+import onlineshopping.sales.SalesRollup;
+import onlineshopping.sales.SalesTotals;
 import onlineshopping.service.base.SearchBaseService;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class SearchServiceImpl implements SearchBaseService {
 
+    private static final int MAX_BULK_ORDERS = 1000;
+
     private final ItemRepo itemRepo;
     private final UserRepo userRepo;
     private final OrderRepo orderRepo;
     private final OrderItemRepo orderItemRepo;
-    private final TransactionRepo transactionRepo;
-    private final OrderStatusRepo statusRepo;
+    private final CatalogSnapshot catalogSnapshot;
+    private final ItemAutocomplete itemAutocomplete;
+    private final FacetIndex facetIndex;
+    private final FullTextIndex fullTextIndex;
+    private final ItemCache itemCache;
+    private final ConflictRetryAspect conflictRetry;
+    private final StockHolds stockHolds;
+    private final OrderStatusLog statusLog;
+    private final SalesTotals salesTotals;
+    private final SalesRollup salesRollup;
 
     @Override
-    public List<String> findItemNames(String queryStr) {
+    public List<String> findItemNames(String queryStr, int limit) {
        try {
-           return itemRepo.findItemNames(queryStr);
-       }catch (DataAccessException exception){
+           return itemAutocomplete.suggest(queryStr, limit);
+       }catch (DatabaseAccessException exception){
            throw new HandleExceptions("Error: No search result found");
        }
     }
@@ -49,20 +86,8 @@ public class SearchServiceImpl implements SearchBaseService {
 
     @Override
     public List<Item> findFoundItems() {
-        List<Item> items = itemRepo.findAllItem();
-        for (Item item : items) {
-            // Process sizes and colors to remove escaped quotes
-            List<String> processedSizes = item.getSizes().stream()
-                    .map(size -> size.replaceAll("^\"|\"$", ""))
-                    .collect(Collectors.toList());
-            item.setSizes(processedSizes);
-
-            List<String> processedColors = item.getColors().stream()
-                    .map(color -> color.replaceAll("^\"|\"$", ""))
-                    .collect(Collectors.toList());
-            item.setColors(processedColors);
-        }
-        return items;
+        // served from the in-memory snapshot, quotes are already stripped when it is built
+        return catalogSnapshot.current().getItems();
     }
 
 
@@ -75,6 +100,28 @@ public class SearchServiceImpl implements SearchBaseService {
         }
     }
 
+    @Override
+    public ItemResponse findItemDetail(String itemNo) {
+        try {
+            return itemCache.get(itemNo);
+        } catch (DataAccessException accessException) {
+            throw new DatabaseAccessException("Error: " + accessException.getMessage());
+        }
+    }
+
+    @Override
+    public PageResponse<Item> searchItems(String queryStr, int pageNumber, int pageSize) {
+        return fullTextIndex.search(queryStr, pageNumber, pageSize);
+    }
+
+    @Override
+    public FacetSearchResponse findFacetedItems(Map<String, List<String>> filters, Double minPrice, Double maxPrice, int pageNumber, int pageSize) {
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new HandleExceptions("minPrice can not be greater than maxPrice");
+        }
+        return facetIndex.search(filters, minPrice, maxPrice, pageNumber, pageSize);
+    }
+
     @Override
     public Page<Object[]> findAllUsers(Pageable pageable) {
         try {
@@ -105,7 +152,7 @@ public class SearchServiceImpl implements SearchBaseService {
     @Override
     public int findTotalSales() {
         try {
-           return orderRepo.findTotalSales();
+           return (int) Math.round(salesTotals.sales());
         }catch (DataAccessException accessException){
             throw new DatabaseAccessException("Error: "+accessException.getMessage());
         }
@@ -114,7 +161,7 @@ public class SearchServiceImpl implements SearchBaseService {
     @Override
     public int findTotalOrders() {
         try {
-            return orderRepo.findTotalOrders();
+            return (int) salesTotals.orders();
         }catch (DataAccessException accessException){
             throw new DatabaseAccessException("Error: "+accessException.getMessage());
         }
@@ -123,7 +170,7 @@ public class SearchServiceImpl implements SearchBaseService {
     @Override
     public int findTotalProduct() {
         try {
-            return orderItemRepo.findTotalProduct();
+            return (int) salesTotals.products();
         }catch (DataAccessException accessException){
             throw new DatabaseAccessException("Error: "+accessException.getMessage());
         }
@@ -139,21 +186,81 @@ public class SearchServiceImpl implements SearchBaseService {
     }
 
     @Override
-    public List<SalesPerMonthDTO> getSalesPerMonth() {
-            List<Object[]> results = transactionRepo.findSalesPerMonth();
-            List<SalesPerMonthDTO> salesPerMonthList = new ArrayList<>();
+    public CursorPageResponse<Object[]> findAllUsers(String cursor, int pageSize, boolean withTotal) {
+        try {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            Pageable limit = PageRequest.of(0, pageSize + 1);
+            List<Object[]> rows = after == null
+                    ? userRepo.findAllUsersFirst(limit)
+                    : userRepo.findAllUsersAfter(after.getDateCreated(), after.getId(), limit);
+            return toCursorPage(rows, pageSize, 4, withTotal ? userRepo.count() : null);
+        }catch (DataAccessException accessException){
+            throw new DatabaseAccessException("Error: "+accessException.getMessage());
+        }
+    }
 
-            for (Object[] result : results) {
-                String month = (String) result[0];
-                double totalSales = (Double) result[1];
-                salesPerMonthList.add(new SalesPerMonthDTO(month, totalSales));
-            }
+    @Override
+    public CursorPageResponse<Object[]> findOrders(String cursor, int pageSize, boolean withTotal) {
+        try {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            Pageable limit = PageRequest.of(0, pageSize + 1);
+            List<Object[]> rows = after == null
+                    ? orderRepo.findOrdersFirst(limit)
+                    : orderRepo.findOrdersAfter(after.getDateCreated(), after.getId(), limit);
+            return toCursorPage(rows, pageSize, 5, withTotal ? orderRepo.count() : null);
+        }catch (DataAccessException accessException){
+            throw new DatabaseAccessException("Error: "+accessException.getMessage());
+        }
+    }
+
+    @Override
+    public CursorPageResponse<Object[]> findLatestOrders(String cursor, int pageSize, boolean withTotal) {
+        try {
+            KeysetCursor before = KeysetCursor.decode(cursor);
+            Pageable limit = PageRequest.of(0, pageSize + 1);
+            List<Object[]> rows = before == null
+                    ? orderRepo.findLatestOrdersFirst(limit)
+                    : orderRepo.findLatestOrdersBefore(before.getDateCreated(), before.getId(), limit);
+            return toCursorPage(rows, pageSize, 5, withTotal ? orderRepo.count() : null);
+        }catch (DataAccessException accessException){
+            throw new DatabaseAccessException("Error: "+accessException.getMessage());
+        }
+    }
+
+    @Override
+    public CursorPageResponse<Object[]> findProducts(String cursor, int pageSize, boolean withTotal) {
+        try {
+            KeysetCursor before = KeysetCursor.decode(cursor);
+            Pageable limit = PageRequest.of(0, pageSize + 1);
+            List<Object[]> rows = before == null
+                    ? orderItemRepo.findProductsFirst(limit)
+                    : orderItemRepo.findProductsBefore(before.getDateCreated(), before.getId(), limit);
+            return toCursorPage(rows, pageSize, 2, withTotal ? orderItemRepo.count() : null);
+        }catch (DataAccessException accessException){
+            throw new DatabaseAccessException("Error: "+accessException.getMessage());
+        }
+    }
+
+    // one extra row is fetched to know whether another page exists, the id is always the last column
+    private static CursorPageResponse<Object[]> toCursorPage(List<Object[]> rows, int pageSize, int dateColumn, Long total) {
+        if (rows.size() <= pageSize) {
+            return new CursorPageResponse<>(rows, null, total);
+        }
+        List<Object[]> page = rows.subList(0, pageSize);
+        Object[] last = page.get(pageSize - 1);
+        String next = new KeysetCursor((LocalDateTime) last[dateColumn], (Long) last[last.length - 1]).encode();
+        return new CursorPageResponse<>(page, next, total);
+    }
 
-            return salesPerMonthList;
+    @Override
+    public List<SalesPerMonthDTO> getSalesPerMonth() {
+        return salesRollup.salesPerMonth();
     }
 
 
     @Override
+    @Transactional
+    @RetryOnConflict
     public ResponseEntity<String> processOrderStatus(String orderNo, String orderStatus) {
         try {
             Order order = orderRepo.findByOrderNo(orderNo);
@@ -161,11 +268,6 @@ public class SearchServiceImpl implements SearchBaseService {
                 throw new SearchExceptions("Oops!!! No order matches");
             }
 
-            OrderStatus status = order.getOrderStatus();
-            if (status == null) {
-                throw new SearchExceptions("Oops!!! No order status found for the order");
-            }
-
             Status newStatus;
             try {
                 newStatus = Status.valueOf(orderStatus);
@@ -173,30 +275,21 @@ public class SearchServiceImpl implements SearchBaseService {
                 throw new SearchExceptions("Invalid order status: " + orderStatus);
             }
 
-            switch (newStatus) {
-                case completed:
-                    status.setOrder_status(Status.completed.name());
-                    break;
-                case canceled:
-                    status.setOrder_status(Status.canceled.name());
-                    break;
-                case processing:
-                    status.setOrder_status(Status.processing.name());
-                    break;
-                case shipped:
-                    status.setOrder_status(Status.shipped.name());
-                    break;
-                case delivered:
-                    status.setOrder_status(Status.delivered.name());
-                    break;
-                default:
-                    throw new SearchExceptions("Unhandled order status: " + newStatus);
+            if (order.getStatus() == newStatus) {
+                return ResponseEntity.ok("Order confirmed successfully");
+            }
+            // canceled is final: its stock is already back on the shelf and cannot be taken again here
+            if (order.getStatus() == null || !order.getStatus().canMoveTo(newStatus)) {
+                throw new HandleExceptions("An order cannot move from " + order.getStatus() + " to " + newStatus);
+            }
+            if (newStatus == Status.canceled) {
+                stockHolds.cancel(List.of(order.getOrderId()));
+                salesTotals.canceled(List.of(order.getOrderId()));
             }
 
-            status.setDate_updated(LocalDateTime.now().withNano(0));
+            statusLog.record(order.getOrderId(), order.getStatus(), newStatus);
+            order.setStatus(newStatus);
             order.setDate_updated(LocalDateTime.now().withNano(0));
-
-            statusRepo.save(status);
             orderRepo.save(order);
 
             return ResponseEntity.ok("Order confirmed successfully");
@@ -205,7 +298,81 @@ public class SearchServiceImpl implements SearchBaseService {
         }
     }
 
+    /**
+     * Moves many orders to one status with a handful of set-based statements: one query reads the current
+     * statuses, then one conditional UPDATE per allowed previous status moves the orders and reports which rows
+     * it moved, so an order changed by someone else in between comes back as failed. The history of all moved
+     * orders goes out as one batch at commit.
+     */
+    @Override
+    @Transactional
+    @RetryOnConflict
+    public List<OrderStatusResult> processOrderStatuses(List<String> orderNos, String orderStatus) {
+        if (orderNos == null || orderNos.isEmpty()) {
+            throw new HandleExceptions("No order numbers given");
+        }
+        if (orderNos.size() > MAX_BULK_ORDERS) {
+            throw new HandleExceptions("At most " + MAX_BULK_ORDERS + " orders can be changed at once");
+        }
+        Status target;
+        try {
+            target = Status.valueOf(orderStatus);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new HandleExceptions("Invalid order status: " + orderStatus);
+        }
+
+        Map<String, OrderStatusView> current = new HashMap<>();
+        for (OrderStatusView view : orderRepo.findStatuses(new LinkedHashSet<>(orderNos))) {
+            current.put(view.getOrderNo(), view);
+        }
+
+        Map<Status, List<Long>> candidates = new EnumMap<>(Status.class);
+        for (OrderStatusView view : current.values()) {
+            Status from = view.getStatus();
+            if (from != null && from.canMoveTo(target)) {
+                candidates.computeIfAbsent(from, status -> new ArrayList<>()).add(view.getOrderId());
+            }
+        }
+
+        Set<Long> moved = new HashSet<>();
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        for (Map.Entry<Status, List<Long>> group : candidates.entrySet()) {
+            List<Long> orderIds = orderRepo.transition(group.getValue(), group.getKey().name(), target.name(), now);
+            statusLog.record(orderIds, group.getKey(), target);
+            moved.addAll(orderIds);
+        }
+        if (target == Status.canceled && !moved.isEmpty()) {
+            // unpaid orders give their stock back
+            stockHolds.cancel(moved);
+            salesTotals.canceled(moved);
+        }
+
+        List<OrderStatusResult> results = new ArrayList<>(orderNos.size());
+        for (String orderNo : orderNos) {
+            OrderStatusView view = current.get(orderNo);
+            if (view == null) {
+                results.add(new OrderStatusResult(orderNo, null, null, "Oops!!! No order matches", false));
+                continue;
+            }
+            String previous = view.getStatus() == null ? null : view.getStatus().name();
+            if (moved.contains(view.getOrderId())) {
+                results.add(new OrderStatusResult(orderNo, previous, target.name(), null, true));
+            } else if (view.getStatus() == target) {
+                results.add(new OrderStatusResult(orderNo, previous, previous, null, true));
+            } else if (view.getStatus() != null && view.getStatus().canMoveTo(target)) {
+                results.add(new OrderStatusResult(orderNo, previous, previous,
+                        "The order was changed by someone else, please try again", false));
+            } else {
+                results.add(new OrderStatusResult(orderNo, previous, previous,
+                        "An order cannot move from " + previous + " to " + target.name(), false));
+            }
+        }
+        return results;
+    }
+
     @Override
+    @Transactional
+    @RetryOnConflict
     public ResponseEntity<String> cancelOrder(String orderNo) {
         try {
             Order order = orderRepo.findByOrderNo(orderNo);
@@ -213,17 +380,19 @@ public class SearchServiceImpl implements SearchBaseService {
                 throw new SearchExceptions("Oops!!! No order matches");
             }
 
-            OrderStatus status = order.getOrderStatus();
-            if (status == null) {
-                throw new SearchExceptions("Oops!!! No order status found for the order");
+            if (order.getStatus() == Status.canceled) {
+                return ResponseEntity.ok("Order already canceled");
             }
+            if (order.getStatus() == null || !order.getStatus().canMoveTo(Status.canceled)) {
+                throw new HandleExceptions("An order that is " + order.getStatus() + " can no longer be canceled");
+            }
+            // an unpaid order still holds its stock, put it back on the shelf
+            stockHolds.cancel(List.of(order.getOrderId()));
+            salesTotals.canceled(List.of(order.getOrderId()));
 
-            status.setOrder_status(Status.canceled.name());
-            status.setDate_updated(LocalDateTime.now().withNano(0));
-
+            statusLog.record(order.getOrderId(), order.getStatus(), Status.canceled);
+            order.setStatus(Status.canceled);
             order.setDate_updated(LocalDateTime.now().withNano(0));
-
-            statusRepo.save(status);
             orderRepo.save(order);
 
             return ResponseEntity.ok("Order confirmed successfully");
@@ -233,6 +402,18 @@ public class SearchServiceImpl implements SearchBaseService {
     }
 
 
+    public CacheStats getItemCacheStats() {
+        return itemCache.stats();
+    }
+
+    public List<SingleFlightStats> getSingleFlightStats() {
+        return List.of(itemCache.flightStats(), catalogSnapshot.flightStats());
+    }
+
+    public List<RetryStats> getRetryStats() {
+        return conflictRetry.stats();
+    }
+
     public ResponseEntity<String> getImagePath(String imageName){
         Optional<String> image_path = itemRepo.findByImageUrl(imageName);
         if (image_path.isPresent()){
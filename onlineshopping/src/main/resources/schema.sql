@@ -0,0 +1,76 @@
+-- runs before Hibernate on every start, every statement must be safe to repeat
+
+-- ids are allocated in pooled blocks of 50 (allocationSize = 50), older databases still have sequences stepping by 1
+ALTER SEQUENCE IF EXISTS user_sequence INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS otp_sequence INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS item_sequence INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS order_sequence INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS order_item_sequence INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS order_status_sequence INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS transaction_sequence INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS invoice_sequence INCREMENT BY 50;
+
+-- optimistic locking columns (@Version), rows written before the column existed start at version 0
+ALTER TABLE IF EXISTS items ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE IF EXISTS orders ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE IF EXISTS order_status ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- the current status moved from the 1:1 order_status table onto orders, carry it over for orders placed before
+ALTER TABLE IF EXISTS orders ADD COLUMN IF NOT EXISTS status VARCHAR(16);
+DO 'BEGIN
+    IF to_regclass(''order_status'') IS NOT NULL AND to_regclass(''orders'') IS NOT NULL THEN
+        UPDATE orders o SET status = s.order_status FROM order_status s WHERE s.order_id = o.order_id AND o.status IS NULL;
+    END IF;
+END';
+
+-- order lines carry their order's date so the products keyset seeks on one index, copy it onto older lines
+ALTER TABLE IF EXISTS order_item ADD COLUMN IF NOT EXISTS date_created TIMESTAMP;
+DO 'BEGIN
+    IF to_regclass(''order_item'') IS NOT NULL AND to_regclass(''orders'') IS NOT NULL THEN
+        UPDATE order_item oi SET date_created = o.date_created FROM orders o WHERE o.order_id = oi.order_id AND oi.date_created IS NULL;
+    END IF;
+END';
+
+-- order, item and enrollment numbers are unique. Rows from before the Snowflake numbers may repeat one, then the
+-- start fails here naming them, rather than Hibernate skipping the constraint with a warning. Checked until it exists
+DO 'DECLARE duplicates TEXT;
+BEGIN
+    IF to_regclass(''orders'') IS NOT NULL AND to_regclass(''ux_orders_order_number'') IS NULL THEN
+        SELECT string_agg(order_number, '', '') INTO duplicates FROM (SELECT order_number FROM orders
+            WHERE order_number IS NOT NULL GROUP BY order_number HAVING COUNT(*) > 1 ORDER BY order_number LIMIT 20) d;
+        IF duplicates IS NOT NULL THEN
+            RAISE EXCEPTION ''Cannot create ux_orders_order_number, orders.order_number repeats: %'', duplicates;
+        END IF;
+        ALTER TABLE orders ADD CONSTRAINT ux_orders_order_number UNIQUE (order_number);
+    END IF;
+END';
+DO 'DECLARE duplicates TEXT;
+BEGIN
+    IF to_regclass(''items'') IS NOT NULL AND to_regclass(''ux_items_item_number'') IS NULL THEN
+        SELECT string_agg(item_number, '', '') INTO duplicates FROM (SELECT item_number FROM items
+            WHERE item_number IS NOT NULL GROUP BY item_number HAVING COUNT(*) > 1 ORDER BY item_number LIMIT 20) d;
+        IF duplicates IS NOT NULL THEN
+            RAISE EXCEPTION ''Cannot create ux_items_item_number, items.item_number repeats: %'', duplicates;
+        END IF;
+        ALTER TABLE items ADD CONSTRAINT ux_items_item_number UNIQUE (item_number);
+    END IF;
+END';
+DO 'DECLARE duplicates TEXT;
+BEGIN
+    IF to_regclass(''users'') IS NOT NULL AND to_regclass(''ux_users_enroll_number'') IS NULL THEN
+        SELECT string_agg(enroll_number, '', '') INTO duplicates FROM (SELECT enroll_number FROM users
+            WHERE enroll_number IS NOT NULL GROUP BY enroll_number HAVING COUNT(*) > 1 ORDER BY enroll_number LIMIT 20) d;
+        IF duplicates IS NOT NULL THEN
+            RAISE EXCEPTION ''Cannot create ux_users_enroll_number, users.enroll_number repeats: %'', duplicates;
+        END IF;
+        ALTER TABLE users ADD CONSTRAINT ux_users_enroll_number UNIQUE (enroll_number);
+    END IF;
+END';
+
+-- a checkout writes its Idempotency-Key on the order in the same transaction, so a retry finds the committed order
+ALTER TABLE IF EXISTS orders ADD COLUMN IF NOT EXISTS idempotency_key VARCHAR(300);
+DO 'BEGIN
+    IF to_regclass(''orders'') IS NOT NULL AND to_regclass(''ux_orders_idempotency_key'') IS NULL THEN
+        ALTER TABLE orders ADD CONSTRAINT ux_orders_idempotency_key UNIQUE (idempotency_key);
+    END IF;
+END';
@@ -0,0 +1,101 @@
+package onlineshopping.audience;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    private static final int PRECISION = 12;
+
+    @Test
+    void emptySketchCountsZero() {
+        assertEquals(0, new HyperLogLog(PRECISION).cardinality());
+    }
+
+    @Test
+    void estimatesStayWithinThreeStandardErrors() {
+        for (int distinct : new int[]{100, 1_000, 10_000, 100_000}) {
+            HyperLogLog sketch = new HyperLogLog(PRECISION);
+            for (int i = 0; i < distinct; i++) {
+                sketch.offer("user-" + i);
+            }
+            double error = Math.abs(sketch.cardinality() - distinct) / (double) distinct;
+            assertTrue(error < 3 * sketch.standardError(), distinct + " counted as " + sketch.cardinality());
+        }
+    }
+
+    @Test
+    void repeatedElementsAreCountedOnce() {
+        HyperLogLog sketch = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 1_000; i++) {
+            sketch.offer("user-" + i);
+        }
+        long once = sketch.cardinality();
+        for (int i = 0; i < 1_000; i++) {
+            assertFalse(sketch.offer("user-" + i));
+        }
+        assertEquals(once, sketch.cardinality());
+    }
+
+    @Test
+    void mergeGivesTheSketchOfTheUnion() {
+        HyperLogLog left = new HyperLogLog(PRECISION);
+        HyperLogLog right = new HyperLogLog(PRECISION);
+        HyperLogLog union = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 6_000; i++) {
+            (i < 4_000 ? left : right).offer("user-" + i);
+            union.offer("user-" + i);
+        }
+        // overlapping elements, already in both
+        for (int i = 2_000; i < 4_000; i++) {
+            right.offer("user-" + i);
+        }
+        left.merge(right);
+        assertArrayEquals(union.toBytes(), left.toBytes());
+    }
+
+    @Test
+    void mergeRejectsAnotherPrecision() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(12).merge(new HyperLogLog(10)));
+    }
+
+    @Test
+    void precisionOutsideTheSupportedRangeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(3));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(17));
+    }
+
+    @Test
+    void sparseAndDenseFormsRoundTrip() {
+        HyperLogLog sparse = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 10; i++) {
+            sparse.offer("user-" + i);
+        }
+        byte[] sparseBytes = sparse.toBytes();
+        // format and precision, then one index and value triple per set register
+        assertEquals(2 + 3 * 10, sparseBytes.length);
+        assertEquals(sparse.cardinality(), HyperLogLog.fromBytes(sparseBytes).cardinality());
+
+        HyperLogLog dense = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 50_000; i++) {
+            dense.offer("user-" + i);
+        }
+        byte[] denseBytes = dense.toBytes();
+        assertEquals(2 + (1 << PRECISION), denseBytes.length);
+        assertArrayEquals(denseBytes, HyperLogLog.fromBytes(denseBytes).toBytes());
+        assertEquals(dense.cardinality(), HyperLogLog.fromBytes(denseBytes).cardinality());
+    }
+
+    @Test
+    void copyIsIndependent() {
+        HyperLogLog sketch = new HyperLogLog(PRECISION);
+        sketch.offer("user-1");
+        HyperLogLog copy = sketch.copy();
+        for (int i = 2; i < 1_000; i++) {
+            copy.offer("user-" + i);
+        }
+        assertEquals(1, sketch.cardinality());
+        assertTrue(copy.cardinality() > 900);
+    }
+}
@@ -0,0 +1,104 @@
+package onlineshopping.catalog;
+
+import onlineshopping.entity.Item;
+import onlineshopping.model.FacetSearchResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FacetIndexTest {
+
+    private FacetIndex index;
+    private Item shirt;
+
+    @BeforeEach
+    void load() {
+        index = new FacetIndex(null);
+        shirt = item("IT1", "Shirt", List.of("men"), List.of("Red", "blue"), List.of("M"), 5_000, 0);
+        index.onCatalogLoaded(List.of(
+                shirt,
+                item("IT2", "Blouse", List.of("women"), List.of("red"), List.of("S", "M"), 30_000, 0),
+                item("IT3", "Coat", List.of("men", "fashion"), List.of("black"), List.of("L"), 120_000, 30_000)
+        ));
+    }
+
+    @Test
+    void valuesOfOneFacetAreOredAndFacetsAreAnded() {
+        assertEquals(List.of("IT3", "IT1"), itemNos(index.search(Map.of("color", List.of("RED ", "black"), "category", List.of("men")), null, null, 0, 10)));
+        assertEquals(List.of("IT2"), itemNos(index.search(Map.of("color", List.of("red"), "size", List.of("s")), null, null, 0, 10)));
+        assertEquals(0, index.search(Map.of("color", List.of("green")), null, null, 0, 10).getTotalElements());
+    }
+
+    @Test
+    void facetCountsCoverTheMatches() {
+        FacetSearchResponse response = index.search(Map.of("color", List.of("red")), null, null, 0, 10);
+        assertEquals(Map.of("men", 1, "women", 1), response.getFacets().get("category"));
+        assertEquals(Map.of("red", 2, "blue", 1), response.getFacets().get("color"));
+        assertEquals(Map.of("m", 2, "s", 1), response.getFacets().get("size"));
+    }
+
+    @Test
+    void pricesFilterAndBucketAfterTheDiscount() {
+        // the coat costs 120000 less a 30000 discount
+        FacetSearchResponse response = index.search(Map.of(), 20_000.0, 90_000.0, 0, 10);
+        assertEquals(List.of("IT2", "IT3"), itemNos(response));
+        assertEquals(1, response.getPriceBuckets().get("25000-50000"));
+        assertEquals(1, response.getPriceBuckets().get("50000-100000"));
+        assertEquals(0, response.getPriceBuckets().get("250000+"));
+    }
+
+    @Test
+    void pagesPastTheEndOverflowNothing() {
+        assertTrue(index.search(Map.of(), null, null, Integer.MAX_VALUE, 10).getContent().isEmpty());
+        assertTrue(index.search(Map.of(), null, null, 1, Integer.MAX_VALUE).getContent().isEmpty());
+        assertEquals(List.of("IT1"), itemNos(index.search(Map.of(), null, null, 2, 1)));
+    }
+
+    @Test
+    void removedItemsLeaveNoValuesBehind() {
+        index.onItemChanged(shirt, null);
+        FacetSearchResponse response = index.search(Map.of(), null, null, 0, 10);
+        assertEquals(2, response.getTotalElements());
+        assertFalse(response.getFacets().get("color").containsKey("blue"));
+        assertEquals(0, index.search(Map.of("color", List.of("blue")), null, null, 0, 10).getTotalElements());
+    }
+
+    @Test
+    void editsClearTheValuesTheItemWasIndexedUnder() {
+        // the previous state handed over may already differ from the indexed one, the indexed values still go
+        Item stale = item("IT1", "Shirt", List.of("men"), List.of("green"), List.of("M"), 5_000, 0);
+        index.onItemChanged(stale, item("IT1", "Shirt", List.of("men"), List.of("white"), List.of("M"), 5_000, 0));
+        assertEquals(0, index.search(Map.of("color", List.of("blue")), null, null, 0, 10).getTotalElements());
+        assertEquals(List.of("IT1"), itemNos(index.search(Map.of("color", List.of("white")), null, null, 0, 10)));
+        assertEquals(1, index.search(Map.of("color", List.of("red")), null, null, 0, 10).getTotalElements());
+    }
+
+    @Test
+    void removedSlotsAreReused() {
+        index.onItemChanged(shirt, null);
+        index.onItemChanged(null, item("IT4", "Jacket", List.of("men"), List.of("blue"), List.of("XL"), 60_000, 0));
+        assertEquals(List.of("IT4"), itemNos(index.search(Map.of("color", List.of("blue")), null, null, 0, 10)));
+        assertEquals(3, index.search(Map.of(), null, null, 0, 10).getTotalElements());
+    }
+
+    private static Item item(String itemNo, String name, List<String> category, List<String> colors, List<String> sizes,
+                             double actualPrice, double discountPrice) {
+        Item item = new Item();
+        item.setItemNo(itemNo);
+        item.setItemName(name);
+        item.setCategory(category);
+        item.setColors(colors);
+        item.setSizes(sizes);
+        item.setActualPrice(actualPrice);
+        item.setDiscountPrice(discountPrice);
+        return item;
+    }
+
+    private static List<String> itemNos(FacetSearchResponse response) {
+        return response.getContent().stream().map(Item::getItemNo).toList();
+    }
+}
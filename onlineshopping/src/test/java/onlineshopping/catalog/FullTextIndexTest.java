@@ -0,0 +1,109 @@
+package onlineshopping.catalog;
+
+import onlineshopping.entity.Item;
+import onlineshopping.model.PageResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FullTextIndexTest {
+
+    private FullTextIndex index;
+    private Item runningShoes;
+
+    @BeforeEach
+    void load() {
+        index = new FullTextIndex(null);
+        runningShoes = item("IT1", "Running Shoes", "sport", "Light shoes for running");
+        index.onCatalogLoaded(List.of(
+                runningShoes,
+                item("IT2", "Leather Shoe", "formal", "Classic leather"),
+                item("IT3", "Evening Dress", "fashion", "Evening dress with a shoes pattern"),
+                item("IT4", "Wool Scarf", "fashion", "Warm and soft")
+        ));
+    }
+
+    @Test
+    void rankingFollowsFieldWeights() {
+        // shoe in name and description beats shoe in the name, which beats shoe in the description only
+        assertEquals(List.of("IT1", "IT2", "IT3"), itemNos(index.search("shoe", 0, 10)));
+    }
+
+    @Test
+    void rarerTermsScoreHigher() {
+        // dress is in one item and shoe in three, the rare dress match lifts IT3 above the stronger shoe matches
+        assertEquals("IT3", itemNos(index.search("shoe dress", 0, 10)).get(0));
+    }
+
+    @Test
+    void queriesAreStemmedLikeTheDocuments() {
+        assertEquals(List.of("IT1"), itemNos(index.search("run", 0, 10)));
+        assertEquals(List.of("IT1"), itemNos(index.search("RUNS", 0, 10)));
+    }
+
+    @Test
+    void stopWordsAndUnknownTermsMatchNothing() {
+        PageResponse<Item> page = index.search("the and with", 0, 10);
+        assertTrue(page.getContent().isEmpty());
+        assertEquals(0, page.getTotalElements());
+        assertEquals(0, index.search("umbrella", 0, 10).getTotalElements());
+    }
+
+    @Test
+    void pagesSplitTheRanking() {
+        PageResponse<Item> first = index.search("shoe", 0, 2);
+        PageResponse<Item> second = index.search("shoe", 1, 2);
+        assertEquals(List.of("IT1", "IT2"), itemNos(first));
+        assertEquals(List.of("IT3"), itemNos(second));
+        assertEquals(2, first.getTotalPages());
+        assertEquals(3, first.getTotalElements());
+    }
+
+    @Test
+    void pagesPastTheEndOverflowNothing() {
+        PageResponse<Item> farPage = index.search("shoe", Integer.MAX_VALUE, 10);
+        assertTrue(farPage.getContent().isEmpty());
+        assertEquals(3, farPage.getTotalElements());
+
+        PageResponse<Item> hugePage = index.search("shoe", 1, Integer.MAX_VALUE);
+        assertTrue(hugePage.getContent().isEmpty());
+        assertEquals(1, hugePage.getTotalPages());
+    }
+
+    @Test
+    void changedItemsAreReindexed() {
+        index.onItemChanged(runningShoes, item("IT1", "Trail Boots", "sport", "Boots for the hills"));
+        assertEquals(List.of("IT2", "IT3"), itemNos(index.search("shoe", 0, 10)));
+        assertEquals(List.of("IT1"), itemNos(index.search("boot", 0, 10)));
+
+        index.onItemChanged(index.search("boot", 0, 1).getContent().get(0), null);
+        assertEquals(0, index.search("boot", 0, 10).getTotalElements());
+    }
+
+    @Test
+    void stemFoldsPluralsAndVerbForms() {
+        assertEquals("shoe", FullTextIndex.stem("shoes"));
+        assertEquals("dress", FullTextIndex.stem("dresses"));
+        assertEquals("dress", FullTextIndex.stem("dress"));
+        assertEquals("berry", FullTextIndex.stem("berries"));
+        assertEquals("run", FullTextIndex.stem("running"));
+        assertEquals("fill", FullTextIndex.stem("filled"));
+        assertEquals("watch", FullTextIndex.stem("watches"));
+    }
+
+    private static Item item(String itemNo, String name, String type, String description) {
+        Item item = new Item();
+        item.setItemNo(itemNo);
+        item.setItemName(name);
+        item.setType(type);
+        item.setDescription(description);
+        return item;
+    }
+
+    private static List<String> itemNos(PageResponse<Item> page) {
+        return page.getContent().stream().map(Item::getItemNo).toList();
+    }
+}
@@ -0,0 +1,69 @@
+package onlineshopping.catalog;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import onlineshopping.repo.ItemRepo;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Item detail lookups through the entity (findByItemNo and its EAGER collections) against the single projection
+ * query (findItemDetail), each in its own transaction as a request would be. Runs against the configured database
+ * and only when asked: mvn test -Dtest=ItemDetailBenchmark -Dbenchmark=true [-Dbenchmark.ops=3000]
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+class ItemDetailBenchmark {
+
+    private static final int ROUNDS = 2;
+
+    @Autowired
+    private ItemRepo itemRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void entityAgainstProjection() {
+        List<String> itemNos = jdbcTemplate.queryForList("SELECT item_number FROM items LIMIT 1", String.class);
+        Assumptions.assumeFalse(itemNos.isEmpty(), "The benchmark needs at least one item in the database");
+        String itemNo = itemNos.get(0);
+        int ops = Integer.getInteger("benchmark.ops", 3000);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // the first round only warms up the JIT, the connection pool and the statement caches
+        for (int round = 1; round <= ROUNDS; round++) {
+            run(round, "findByItemNo entity path", ops, statistics, () -> itemRepo.findByItemNo(itemNo).getColors().size());
+            run(round, "findItemDetail projection", ops, statistics, () -> itemRepo.findItemDetail(itemNo).orElseThrow().getColors());
+        }
+    }
+
+    private void run(int round, String name, int ops, Statistics statistics, Runnable lookup) {
+        statistics.clear();
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            transactionTemplate.executeWithoutResult(status -> lookup.run());
+        }
+        long micros = (System.nanoTime() - start) / 1000;
+        log.info("round {}  {}  {} us/op  {} statements/op  {} loads/op", round, name, micros / ops,
+                String.format("%.1f", (double) statistics.getPrepareStatementCount() / ops),
+                String.format("%.1f", (double) (statistics.getEntityLoadCount() + statistics.getCollectionLoadCount()) / ops));
+    }
+}
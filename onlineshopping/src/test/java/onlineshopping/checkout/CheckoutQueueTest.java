@@ -0,0 +1,119 @@
+package onlineshopping.checkout;
+
+import onlineshopping.constants.TicketStatus;
+import onlineshopping.exc.HandleExceptions;
+import onlineshopping.exc.SearchExceptions;
+import onlineshopping.model.CartItem;
+import onlineshopping.model.CheckoutTicketResponse;
+import onlineshopping.model.OrderRequest;
+import onlineshopping.model.OrderResponse;
+import onlineshopping.service.impl.OrderServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CheckoutQueueTest {
+
+    private OrderServiceImpl orderService;
+    private CheckoutQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        orderService = mock(OrderServiceImpl.class);
+        queue = new CheckoutQueue(orderService, 10, 1, 20, Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void stop() {
+        queue.stop();
+    }
+
+    @Test
+    void aBatchIsPlacedInOneCallWithItsKeys() throws Exception {
+        when(orderService.processOrders(anyList(), anyList())).thenReturn(List.of(
+                new OrderResponse("OR1", "a@x.com", "Main 1 North", null, true),
+                new OrderResponse("OR2", "b@x.com", "Main 1 North", null, true)));
+        // queued before the worker starts, so both go in one batch
+        CheckoutTicketResponse first = queue.submit(request("a@x.com"), "checkout-async:k1");
+        CheckoutTicketResponse second = queue.submit(request("b@x.com"), null);
+        assertEquals(TicketStatus.queued, first.getStatus());
+        queue.start();
+
+        assertEquals("OR1", done(first).getOrder().getOrderNo());
+        assertEquals("OR2", done(second).getOrder().getOrderNo());
+        assertEquals(TicketStatus.completed, queue.find(first.getTicketId()).getStatus());
+        verify(orderService).processOrders(anyList(), eq(Arrays.asList("checkout-async:k1", null)));
+        verify(orderService, never()).processOrder(any(), any(), any(), any(), any());
+        assertEquals(1, queue.stats().getBatches());
+        assertEquals(0, queue.stats().getFallbacks());
+        assertEquals(2, queue.stats().getCompleted());
+    }
+
+    @Test
+    void aFailedBatchIsPlacedOrderByOrder() throws Exception {
+        when(orderService.processOrders(anyList(), anyList())).thenThrow(new HandleExceptions("Not enough stock for IT1"));
+        when(orderService.processOrder(eq("a@x.com"), any(), any(), any(), any())).thenReturn("OR1");
+        when(orderService.processOrder(eq("b@x.com"), any(), any(), any(), any())).thenThrow(new HandleExceptions("Not enough stock for IT1"));
+        when(orderService.processOrder(eq("c@x.com"), any(), any(), any(), any())).thenThrow(new IllegalStateException("connection reset"));
+        CheckoutTicketResponse placed = queue.submit(request("a@x.com"), "checkout-async:k1");
+        CheckoutTicketResponse outOfStock = queue.submit(request("b@x.com"), null);
+        CheckoutTicketResponse broken = queue.submit(request("c@x.com"), null);
+        queue.start();
+
+        CheckoutTicketResponse placedDone = done(placed);
+        assertEquals(TicketStatus.completed, placedDone.getStatus());
+        assertEquals("OR1", placedDone.getOrder().getOrderNo());
+        CheckoutTicketResponse outOfStockDone = done(outOfStock);
+        assertEquals(TicketStatus.failed, outOfStockDone.getStatus());
+        assertEquals("Not enough stock for IT1", outOfStockDone.getOrder().getErrorMessage());
+        assertEquals("An unexpected error occurred.", done(broken).getOrder().getErrorMessage());
+
+        verify(orderService).processOrder(eq("a@x.com"), any(), any(), any(), eq("checkout-async:k1"));
+        assertEquals(1, queue.stats().getFallbacks());
+        assertEquals(1, queue.stats().getCompleted());
+        assertEquals(2, queue.stats().getFailed());
+    }
+
+    @Test
+    void aFullQueueTurnsTheCheckoutAway() {
+        CheckoutQueue small = new CheckoutQueue(orderService, 1, 1, 20, Duration.ofHours(1));
+        assertNotNull(small.submit(request("a@x.com"), null));
+        assertNull(small.submit(request("b@x.com"), null));
+        assertEquals(1, small.stats().getRejected());
+        assertEquals(1, small.stats().getQueued());
+        small.stop();
+    }
+
+    @Test
+    void aShutdownFailsWhatIsStillQueued() throws Exception {
+        CheckoutTicketResponse ticket = queue.submit(request("a@x.com"), null);
+        queue.stop();
+        CheckoutTicketResponse done = done(ticket);
+        assertEquals(TicketStatus.failed, done.getStatus());
+        assertEquals("Checkout was interrupted by a shutdown, please try again", done.getOrder().getErrorMessage());
+        verifyNoInteractions(orderService);
+    }
+
+    @Test
+    void unknownTicketsAreNotFound() {
+        assertThrows(SearchExceptions.class, () -> queue.find("no-such-ticket"));
+        assertThrows(SearchExceptions.class, () -> queue.find(null));
+    }
+
+    private CheckoutTicketResponse done(CheckoutTicketResponse ticket) throws Exception {
+        return queue.whenDone(ticket.getTicketId()).get(5, TimeUnit.SECONDS);
+    }
+
+    private static OrderRequest request(String email) {
+        return new OrderRequest(email, "Main 1", "North", List.of(new CartItem("IT1", 1, List.of("M"), List.of("red"))));
+    }
+}
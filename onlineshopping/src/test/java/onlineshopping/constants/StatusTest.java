@@ -0,0 +1,67 @@
+package onlineshopping.constants;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static onlineshopping.constants.Status.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatusTest {
+
+    @Test
+    void ordersMoveForwardOnly() {
+        assertEquals(EnumSet.of(processing, completed, canceled), ongoing.next());
+        assertEquals(EnumSet.of(shipped, canceled), processing.next());
+        assertEquals(EnumSet.of(delivered), shipped.next());
+        assertEquals(EnumSet.of(completed), delivered.next());
+    }
+
+    @Test
+    void completedAndCanceledAreFinal() {
+        for (Status target : Status.values()) {
+            assertFalse(completed.canMoveTo(target), "completed -> " + target);
+            assertFalse(canceled.canMoveTo(target), "canceled -> " + target);
+        }
+    }
+
+    @Test
+    void noStatusMovesToItself() {
+        for (Status status : Status.values()) {
+            assertFalse(status.canMoveTo(status), status.name());
+        }
+    }
+
+    @Test
+    void shippedOrdersCannotBeCanceled() {
+        assertFalse(shipped.canMoveTo(canceled));
+        assertFalse(delivered.canMoveTo(canceled));
+        assertTrue(ongoing.canMoveTo(canceled));
+        assertTrue(processing.canMoveTo(canceled));
+    }
+
+    @Test
+    void canMoveToAgreesWithNext() {
+        for (Status from : Status.values()) {
+            Set<Status> next = from.next();
+            for (Status to : Status.values()) {
+                assertEquals(next.contains(to), from.canMoveTo(to), from + " -> " + to);
+            }
+        }
+    }
+
+    @Test
+    void everyStatusReachesCompletedOrIsFinal() {
+        for (Status status : Status.values()) {
+            Set<Status> reached = EnumSet.of(status);
+            boolean grew = true;
+            while (grew) {
+                Set<Status> next = EnumSet.noneOf(Status.class);
+                reached.forEach(from -> next.addAll(from.next()));
+                grew = reached.addAll(next);
+            }
+            assertTrue(reached.contains(completed) || status.next().isEmpty(), status.name());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package onlineshopping.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdGeneratorTest {
+
+    @Test
+    void idsCarryTheNodeAndGrow() {
+        IdGenerator generator = new IdGenerator(5);
+        long previous = 0;
+        for (int i = 0; i < 100_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            assertEquals(5, (id >>> IdGenerator.SEQUENCE_BITS) & IdGenerator.MAX_NODE);
+            previous = id;
+        }
+    }
+
+    @Test
+    void idsStartFromTheCurrentMillisecond() {
+        long before = System.currentTimeMillis();
+        long id = new IdGenerator(0).nextId();
+        long millis = (id >>> (IdGenerator.NODE_BITS + IdGenerator.SEQUENCE_BITS)) + IdGenerator.EPOCH;
+        // a sequence overflow may borrow a millisecond ahead, never one behind
+        assertTrue(millis >= before && millis <= System.currentTimeMillis() + 1);
+    }
+
+    @Test
+    void concurrentCallersNeverShareAnId() throws Exception {
+        IdGenerator generator = new IdGenerator(1);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 50_000; i++) {
+                        ids.add(generator.nextId());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(8 * 50_000, ids.size());
+    }
+
+    @Test
+    void differentNodesNeverShareAnId() {
+        IdGenerator first = new IdGenerator(1);
+        IdGenerator second = new IdGenerator(2);
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(ids.add(first.nextId()));
+            assertTrue(ids.add(second.nextId()));
+        }
+    }
+
+    @Test
+    void codesAreFixedWidthAndSortInCreationOrder() {
+        IdGenerator generator = new IdGenerator(3);
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            String code = generator.nextCode();
+            assertEquals(IdGenerator.CODE_LENGTH, code.length());
+            assertTrue(code.matches("[0-9A-HJKMNP-TV-Z]+"), code);
+            codes.add(code);
+        }
+        List<String> sorted = new ArrayList<>(codes);
+        Collections.sort(sorted);
+        assertEquals(codes, sorted);
+    }
+
+    @Test
+    void encodeIsCrockfordBase32() {
+        assertEquals("0000000000000", IdGenerator.encode(0));
+        assertEquals("000000000000Z", IdGenerator.encode(31));
+        assertEquals("0000000000010", IdGenerator.encode(32));
+        // 13 characters hold 65 bits, the first one only the top 4 bits of a long, the sign bit among them
+        assertEquals("7ZZZZZZZZZZZZ", IdGenerator.encode(Long.MAX_VALUE));
+    }
+
+    @Test
+    void nodeIdAboveTheMaximumIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(IdGenerator.MAX_NODE + 1));
+        assertDoesNotThrow(() -> new IdGenerator(IdGenerator.MAX_NODE));
+    }
+}
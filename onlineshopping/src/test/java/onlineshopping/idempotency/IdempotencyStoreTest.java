@@ -0,0 +1,278 @@
+package onlineshopping.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import onlineshopping.entity.IdempotencyRecord;
+import onlineshopping.exc.ConflictException;
+import onlineshopping.exc.HandleExceptions;
+import onlineshopping.repo.IdempotencyRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IdempotencyStoreTest {
+
+    private static final String SCOPE = "checkout";
+
+    // the idempotency_keys table, the repository queries below act on it the way their SQL does
+    private final Map<String, IdempotencyRecord> table = new HashMap<>();
+    private final AtomicInteger runs = new AtomicInteger();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private IdempotencyRepo repo;
+    private IdempotencyStore store;
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(IdempotencyRepo.class);
+        when(repo.findById(anyString())).thenAnswer(invocation -> Optional.ofNullable(table.get(invocation.<String>getArgument(0))));
+        when(repo.claim(anyString(), anyString(), any(), any())).thenAnswer(invocation -> {
+            String key = invocation.getArgument(0);
+            LocalDateTime now = invocation.getArgument(2);
+            IdempotencyRecord record = table.get(key);
+            if (record != null && !record.getExpiresAt().isBefore(now)) {
+                return 0;
+            }
+            table.put(key, new IdempotencyRecord(key, invocation.getArgument(1), null, null, now, invocation.getArgument(3), now));
+            return 1;
+        });
+        when(repo.takeOver(anyString(), anyString(), any(), any(), any())).thenAnswer(invocation -> {
+            IdempotencyRecord record = table.get(invocation.<String>getArgument(0));
+            LocalDateTime staleBefore = invocation.getArgument(4);
+            if (record == null || !record.getRequestHash().equals(invocation.getArgument(1)) || isFinished(record)
+                    || !record.getHeartbeatAt().isBefore(staleBefore)) {
+                return 0;
+            }
+            record.setCreatedAt(invocation.getArgument(2));
+            record.setExpiresAt(invocation.getArgument(3));
+            record.setHeartbeatAt(invocation.getArgument(2));
+            record.setResponseStatus(null);
+            record.setResponseBody(null);
+            return 1;
+        });
+        when(repo.complete(anyString(), anyInt(), any())).thenAnswer(invocation -> {
+            IdempotencyRecord record = table.get(invocation.<String>getArgument(0));
+            record.setResponseStatus(invocation.getArgument(1));
+            record.setResponseBody(invocation.getArgument(2));
+            return 1;
+        });
+        when(repo.release(anyString())).thenAnswer(invocation ->
+                table.values().removeIf(record -> record.getKey().equals(invocation.getArgument(0)) && !isFinished(record)) ? 1 : 0);
+        store = new IdempotencyStore(repo, objectMapper, 100, Duration.ofHours(24), Duration.ofMinutes(1), Duration.ofSeconds(15));
+    }
+
+    @Test
+    void withoutAKeyTheWriteAlwaysRuns() {
+        assertEquals(HttpStatus.OK, execute(null, "cart", placed("OR1")).getStatusCode());
+        assertEquals(HttpStatus.OK, execute(" ", "cart", placed("OR2")).getStatusCode());
+        assertEquals(2, runs.get());
+        assertTrue(table.isEmpty());
+    }
+
+    @Test
+    void overlongKeysAreRejected() {
+        assertThrows(HandleExceptions.class, () -> execute("k".repeat(256), "cart", placed("OR1")));
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    void aRetryGetsTheFirstResponseBack() {
+        ResponseEntity<Receipt> first = execute("k1", "cart", placed("OR1"));
+        ResponseEntity<Receipt> retry = execute("k1", "cart", placed("OR2"));
+        assertEquals(1, runs.get());
+        assertNull(first.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertEquals(HttpStatus.OK, retry.getStatusCode());
+        assertEquals(new Receipt("OR1"), retry.getBody());
+    }
+
+    @Test
+    void aRetryOnAnotherNodeReadsTheResponseFromTheTable() {
+        execute("k1", "cart", placed("OR1"));
+        IdempotencyStore otherNode = new IdempotencyStore(repo, objectMapper, 100,
+                Duration.ofHours(24), Duration.ofMinutes(1), Duration.ofSeconds(15));
+        ResponseEntity<Receipt> retry = otherNode.execute(SCOPE, "k1", "cart", Receipt.class, key -> fail("ran twice"), key -> null);
+        assertEquals(new Receipt("OR1"), retry.getBody());
+    }
+
+    @Test
+    void aKeyIsBoundToTheRequestItFirstCameWith() {
+        execute("k1", "cart", placed("OR1"));
+        assertThrows(HandleExceptions.class, () -> execute("k1", "another cart", placed("OR2")));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void aRetryWhileTheFirstRunsIsAConflict() {
+        ResponseEntity<Receipt> response = execute("k1", "cart", key -> {
+            assertThrows(ConflictException.class, () -> execute("k1", "cart", placed("OR2")));
+            return placed("OR1").apply(key);
+        });
+        assertEquals(new Receipt("OR1"), response.getBody());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void aClaimWithAStaleHeartbeatIsTakenOver() throws Exception {
+        claimedBy("k1", "cart", LocalDateTime.now().minusMinutes(2));
+        assertEquals(new Receipt("OR1"), execute("k1", "cart", placed("OR1")).getBody());
+        assertEquals(1, runs.get());
+        assertEquals(200, table.get(SCOPE + ":k1").getResponseStatus());
+    }
+
+    @Test
+    void aClaimWithAFreshHeartbeatIsLeftAlone() throws Exception {
+        claimedBy("k1", "cart", LocalDateTime.now().minusSeconds(20));
+        assertThrows(ConflictException.class, () -> execute("k1", "cart", placed("OR1")));
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    void failuresReleaseTheKeyForTheRetry() {
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE,
+                execute("k1", "cart", key -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build()).getStatusCode());
+        assertFalse(table.containsKey(SCOPE + ":k1"));
+
+        assertThrows(IllegalStateException.class, () -> execute("k1", "cart", key -> {
+            throw new IllegalStateException("database down");
+        }));
+        assertFalse(table.containsKey(SCOPE + ":k1"));
+
+        assertEquals(new Receipt("OR1"), execute("k1", "cart", placed("OR1")).getBody());
+    }
+
+    @Test
+    void anErrorAfterTheCommitAnswersWithTheCommittedOutcome() {
+        Map<String, String> orders = new HashMap<>();
+        Function<String, ResponseEntity<Receipt>> committed = committedIn(orders);
+
+        ResponseEntity<Receipt> response = store.execute(SCOPE, "k1", "cart", Receipt.class, key -> {
+            orders.put(key, "OR1");
+            throw new IllegalStateException("connection lost after the commit");
+        }, committed);
+        assertEquals(new Receipt("OR1"), response.getBody());
+
+        ResponseEntity<Receipt> failed = store.execute(SCOPE, "k2", "cart", Receipt.class, key -> {
+            orders.put(key, "OR2");
+            return ResponseEntity.internalServerError().build();
+        }, committed);
+        assertEquals(new Receipt("OR2"), failed.getBody());
+
+        // both are remembered, the retries replay them
+        assertEquals("true", execute("k1", "cart", placed("OR3")).getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertEquals(new Receipt("OR2"), execute("k2", "cart", placed("OR3")).getBody());
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    void aTakeoverFindsWhatTheLostRunCommitted() throws Exception {
+        // the first node committed OR1 and died before remembering the response
+        claimedBy("k1", "cart", LocalDateTime.now().minusMinutes(2));
+        Map<String, String> orders = new HashMap<>(Map.of(SCOPE + ":k1", "OR1"));
+        ResponseEntity<Receipt> response = store.execute(SCOPE, "k1", "cart", Receipt.class, key -> fail("ran twice"), committedIn(orders));
+        assertEquals(new Receipt("OR1"), response.getBody());
+        assertEquals(200, table.get(SCOPE + ":k1").getResponseStatus());
+    }
+
+    @Test
+    void anAcceptedWriteIsReplayedUntilItIsSettled() {
+        assertEquals(HttpStatus.ACCEPTED, execute("k1", "cart", accepted()).getStatusCode());
+        ResponseEntity<Receipt> pending = execute("k1", "cart", placed("OR2"));
+        assertEquals(HttpStatus.ACCEPTED, pending.getStatusCode());
+        assertEquals("true", pending.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+
+        store.settle(SCOPE, "k1", ResponseEntity.ok(new Receipt("OR1")), key -> null);
+        ResponseEntity<Receipt> settled = execute("k1", "cart", placed("OR2"));
+        assertEquals(HttpStatus.OK, settled.getStatusCode());
+        assertEquals(new Receipt("OR1"), settled.getBody());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void aFailedAcceptedWriteReleasesTheKey() {
+        execute("k1", "cart", accepted());
+        store.settle(SCOPE, "k1", null, key -> null);
+        assertFalse(table.containsKey(SCOPE + ":k1"));
+        assertEquals(new Receipt("OR1"), execute("k1", "cart", placed("OR1")).getBody());
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void aFailedAcceptedWriteThatCommittedKeepsItsOutcome() {
+        execute("k1", "cart", accepted());
+        store.settle(SCOPE, "k1", null, committedIn(Map.of(SCOPE + ":k1", "OR1")));
+        assertEquals(new Receipt("OR1"), execute("k1", "cart", placed("OR2")).getBody());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void anAcceptedWriteLostWithItsNodeIsTakenOver() {
+        execute("k1", "cart", accepted());
+        // the node that accepted it stopped its heartbeat
+        table.get(SCOPE + ":k1").setHeartbeatAt(LocalDateTime.now().minusMinutes(2));
+        ResponseEntity<Receipt> retry = execute("k1", "cart", placed("OR1"));
+        assertEquals(HttpStatus.OK, retry.getStatusCode());
+        assertNull(retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void settlingAKeyThisNodeDoesNotRunDoesNothing() {
+        execute("k1", "cart", placed("OR1"));
+        store.settle(SCOPE, "k1", null, key -> null);
+        store.settle(SCOPE, "k2", ResponseEntity.ok(new Receipt("OR2")), key -> null);
+        assertEquals(200, table.get(SCOPE + ":k1").getResponseStatus());
+        assertFalse(table.containsKey(SCOPE + ":k2"));
+    }
+
+    private ResponseEntity<Receipt> execute(String idempotencyKey, Object request, Function<String, ResponseEntity<Receipt>> action) {
+        return store.execute(SCOPE, idempotencyKey, request, Receipt.class, action, key -> null);
+    }
+
+    private Function<String, ResponseEntity<Receipt>> placed(String orderNo) {
+        return key -> {
+            runs.incrementAndGet();
+            return ResponseEntity.ok(new Receipt(orderNo));
+        };
+    }
+
+    private Function<String, ResponseEntity<Receipt>> accepted() {
+        return key -> {
+            runs.incrementAndGet();
+            return ResponseEntity.accepted().body(new Receipt(null));
+        };
+    }
+
+    private static Function<String, ResponseEntity<Receipt>> committedIn(Map<String, String> orders) {
+        return key -> orders.containsKey(key) ? ResponseEntity.ok(new Receipt(orders.get(key))) : null;
+    }
+
+    // the claim another node left behind, running or dead depending on its last heartbeat
+    private void claimedBy(String idempotencyKey, Object request, LocalDateTime heartbeatAt) throws Exception {
+        String key = SCOPE + ":" + idempotencyKey;
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+        table.put(key, new IdempotencyRecord(key, HexFormat.of().formatHex(digest), null, null,
+                heartbeatAt, LocalDateTime.now().plusHours(24), heartbeatAt));
+    }
+
+    private static boolean isFinished(IdempotencyRecord record) {
+        return record.getResponseStatus() != null && record.getResponseStatus() != 202;
+    }
+
+    record Receipt(String orderNo) {
+    }
+}
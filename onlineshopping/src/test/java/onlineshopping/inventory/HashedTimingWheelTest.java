@@ -0,0 +1,103 @@
+package onlineshopping.inventory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedTimingWheelTest {
+
+    private static final Duration TICK = Duration.ofMillis(10);
+
+    private final BlockingQueue<String> expired = new LinkedBlockingQueue<>();
+    private HashedTimingWheel<String> wheel;
+
+    @AfterEach
+    void stop() {
+        if (wheel != null) {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    void expiresNoEarlierThanTheDeadline() throws InterruptedException {
+        wheel = new HashedTimingWheel<>("test-wheel", TICK, 8, expired::add);
+        long start = System.nanoTime();
+        wheel.schedule("H1", Duration.ofMillis(50));
+        assertEquals("H1", expired.poll(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(50).toNanos());
+    }
+
+    @Test
+    void delaysLongerThanOneTurnWaitForTheirRounds() throws InterruptedException {
+        // 4 buckets of 10 ms make a 40 ms turn, 150 ms needs several turns
+        wheel = new HashedTimingWheel<>("test-wheel", TICK, 4, expired::add);
+        long start = System.nanoTime();
+        wheel.schedule("H1", Duration.ofMillis(150));
+        assertEquals("H1", expired.poll(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(150).toNanos());
+    }
+
+    @Test
+    void expiresInDeadlineOrder() throws InterruptedException {
+        List<String> order = new CopyOnWriteArrayList<>();
+        wheel = new HashedTimingWheel<>("test-wheel", TICK, 8, value -> {
+            order.add(value);
+            expired.add(value);
+        });
+        wheel.schedule("H3", Duration.ofMillis(120));
+        wheel.schedule("H1", Duration.ofMillis(20));
+        wheel.schedule("H2", Duration.ofMillis(70));
+        for (int i = 0; i < 3; i++) {
+            assertNotNull(expired.poll(2, TimeUnit.SECONDS));
+        }
+        assertEquals(List.of("H1", "H2", "H3"), order);
+    }
+
+    @Test
+    void cancelledTimeoutsNeverExpire() throws InterruptedException {
+        wheel = new HashedTimingWheel<>("test-wheel", TICK, 8, expired::add);
+        HashedTimingWheel.Timeout<String> cancelled = wheel.schedule("H1", Duration.ofMillis(100));
+        wheel.schedule("H2", Duration.ofMillis(150));
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertEquals("H2", expired.poll(2, TimeUnit.SECONDS));
+        assertTrue(expired.isEmpty());
+    }
+
+    @Test
+    void firedTimeoutsCannotBeCancelled() throws InterruptedException {
+        wheel = new HashedTimingWheel<>("test-wheel", TICK, 8, expired::add);
+        HashedTimingWheel.Timeout<String> timeout = wheel.schedule("H1", Duration.ZERO);
+        assertEquals("H1", expired.poll(2, TimeUnit.SECONDS));
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    void aFailingConsumerDoesNotStopTheWheel() throws InterruptedException {
+        wheel = new HashedTimingWheel<>("test-wheel", TICK, 8, value -> {
+            if (value.equals("bad")) {
+                throw new IllegalStateException("consumer failed");
+            }
+            expired.add(value);
+        });
+        wheel.schedule("bad", Duration.ofMillis(10));
+        wheel.schedule("H1", Duration.ofMillis(40));
+        assertEquals("H1", expired.poll(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void nothingExpiresAfterStop() throws InterruptedException {
+        wheel = new HashedTimingWheel<>("test-wheel", TICK, 8, expired::add);
+        wheel.schedule("H1", Duration.ofMillis(50));
+        wheel.stop();
+        assertNull(expired.poll(200, TimeUnit.MILLISECONDS));
+    }
+}
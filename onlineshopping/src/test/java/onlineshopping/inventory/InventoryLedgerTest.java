@@ -0,0 +1,231 @@
+package onlineshopping.inventory;
+
+import onlineshopping.catalog.ItemChangedEvent;
+import onlineshopping.model.CheckoutItemView;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class InventoryLedgerTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private InventoryLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        ledger = new InventoryLedger(jdbcTemplate);
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void reservesUntilTheSeededStockRunsOut() {
+        Map<String, CheckoutItemView> items = items(item(1L, "IT1", 5));
+        assertNull(ledger.reserve(items, Map.of("IT1", 3)));
+        assertNull(ledger.reserve(items, Map.of("IT1", 2)));
+        // the read still says 5, but 5 units were taken and committed outside any transaction
+        assertEquals("IT1", ledger.reserve(items(item(1L, "IT1", 0)), Map.of("IT1", 1)));
+        assertEquals(2, ledger.stats().getReserved());
+        assertEquals(1, ledger.stats().getRejectedInMemory());
+    }
+
+    @Test
+    void aCartIsReservedAllOrNothing() {
+        Map<String, CheckoutItemView> items = items(item(1L, "IT1", 5), item(2L, "IT2", 1));
+        Map<String, Integer> cart = new LinkedHashMap<>();
+        cart.put("IT1", 4);
+        cart.put("IT2", 2);
+        assertEquals("IT2", ledger.reserve(items, cart));
+        // the 4 units of IT1 went back
+        assertNull(ledger.reserve(items, Map.of("IT1", 5)));
+    }
+
+    @Test
+    void aRolledBackCheckoutGivesItsUnitsBack() {
+        Map<String, CheckoutItemView> items = items(item(1L, "IT1", 5));
+        List<TransactionSynchronization> rolledBack = inTransaction(() -> assertNull(ledger.reserve(items, Map.of("IT1", 5))));
+        assertEquals("IT1", ledger.reserve(items(item(1L, "IT1", 0)), Map.of("IT1", 1)));
+        rolledBack.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        assertNull(ledger.reserve(items(item(1L, "IT1", 5)), Map.of("IT1", 5)));
+        assertEquals(1, ledger.stats().getReleased());
+    }
+
+    @Test
+    void aCommittedCheckoutKeepsItsUnits() {
+        Map<String, CheckoutItemView> items = items(item(1L, "IT1", 5));
+        inTransaction(() -> assertNull(ledger.reserve(items, Map.of("IT1", 5))))
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        // the stock read after the commit is 0, nothing can be reseeded
+        assertEquals("IT1", ledger.reserve(items(item(1L, "IT1", 0)), Map.of("IT1", 1)));
+    }
+
+    @Test
+    void aShortCounterIsReseededFromTheReadLessTheUnitsInFlight() {
+        assertNull(ledger.reserve(items(item(1L, "IT1", 4)), Map.of("IT1", 4)));
+        // another node put 6 units back: the counter is at 0 but the database reads 6
+        assertNull(ledger.reserve(items(item(1L, "IT1", 6)), Map.of("IT1", 2)));
+        assertEquals(1, ledger.stats().getReseeded());
+
+        // 3 units are reserved by a checkout that has not committed, they are still in the read
+        List<TransactionSynchronization> running = inTransaction(() -> assertNull(ledger.reserve(items(item(1L, "IT1", 4)), Map.of("IT1", 3))));
+        // the counter has 1 left; the read of 5 holds the 3 in flight, so 2 can be reseeded, not 5
+        assertEquals("IT1", ledger.reserve(items(item(1L, "IT1", 5)), Map.of("IT1", 3)));
+        assertNull(ledger.reserve(items(item(1L, "IT1", 5)), Map.of("IT1", 2)));
+
+        // the checkout in flight rolls back and releases into the reseeded counter: 3 free, not more
+        running.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        assertNull(ledger.reserve(items(item(1L, "IT1", 3)), Map.of("IT1", 3)));
+        assertEquals("IT1", ledger.reserve(items(item(1L, "IT1", 0)), Map.of("IT1", 1)));
+    }
+
+    @Test
+    void aShortRowMarksTheCounterStale() {
+        Map<String, CheckoutItemView> items = items(item(1L, "IT1", 10));
+        assertNull(ledger.reserve(items, Map.of("IT1", 2)));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{0});
+        assertEquals("IT1", ledger.persist(items, Map.of("IT1", 2)));
+        assertEquals(1, ledger.stats().getRejectedByDatabase());
+
+        // the counter still has 8, the next read of 1 wins over it
+        assertEquals("IT1", ledger.reserve(items(item(1L, "IT1", 1)), Map.of("IT1", 2)));
+        assertNull(ledger.reserve(items(item(1L, "IT1", 1)), Map.of("IT1", 1)));
+    }
+
+    @Test
+    void persistDecrementsInItemIdOrder() {
+        Map<String, CheckoutItemView> items = items(item(2L, "IT2", 5), item(1L, "IT1", 5));
+        Map<String, Integer> cart = new LinkedHashMap<>();
+        cart.put("IT2", 2);
+        cart.put("IT1", 3);
+        List<Object[]> arguments = new ArrayList<>();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            arguments.addAll(invocation.getArgument(1));
+            return new int[]{1, 1};
+        });
+        assertNull(ledger.persist(items, cart));
+        assertArrayEquals(new Object[]{3, 1L, 3}, arguments.get(0));
+        assertArrayEquals(new Object[]{2, 2L, 2}, arguments.get(1));
+    }
+
+    @Test
+    void releasedHoldsAddUnitsAndEditsReseed() {
+        assertNull(ledger.reserve(items(item(1L, "IT1", 2)), Map.of("IT1", 2)));
+        ledger.onItemChanged(new ItemChangedEvent("IT1", 2));
+        assertNull(ledger.reserve(items(item(1L, "IT1", 0)), Map.of("IT1", 2)));
+        // a checkout's own decrement was taken at reserve already
+        ledger.onItemChanged(new ItemChangedEvent("IT1", -2));
+        assertEquals("IT1", ledger.reserve(items(item(1L, "IT1", 0)), Map.of("IT1", 1)));
+
+        // an edit set the stock to 7
+        ledger.onItemChanged(new ItemChangedEvent("IT1"));
+        assertNull(ledger.reserve(items(item(1L, "IT1", 7)), Map.of("IT1", 7)));
+    }
+
+    @Test
+    void concurrentCheckoutsAndRollbacksKeepTheCountExact() throws Exception {
+        // more stock than checkouts, so every counter change is a plain take, commit or release
+        int stock = 10_000;
+        Map<String, CheckoutItemView> items = items(item(1L, "IT1", stock));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    int taken = 0;
+                    for (int i = 0; i < 500; i++) {
+                        // every other checkout rolls back
+                        List<TransactionSynchronization> syncs = new ArrayList<>();
+                        TransactionSynchronizationManager.initSynchronization();
+                        try {
+                            boolean reserved = ledger.reserve(items, Map.of("IT1", 1)) == null;
+                            syncs.addAll(TransactionSynchronizationManager.getSynchronizations());
+                            boolean commit = reserved && i % 2 == 0;
+                            syncs.forEach(sync -> sync.afterCompletion(commit
+                                    ? TransactionSynchronization.STATUS_COMMITTED : TransactionSynchronization.STATUS_ROLLED_BACK));
+                            taken += commit ? 1 : 0;
+                        } finally {
+                            TransactionSynchronizationManager.clearSynchronization();
+                        }
+                    }
+                    return taken;
+                }));
+            }
+            int taken = 0;
+            for (Future<Integer> future : futures) {
+                taken += future.get();
+            }
+            assertEquals(stock - taken, freeUnits());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // counts what is left by reserving it unit by unit against a read of 0, which nothing can be reseeded from
+    private int freeUnits() {
+        int free = 0;
+        while (ledger.reserve(items(item(1L, "IT1", 0)), Map.of("IT1", 1)) == null) {
+            free++;
+        }
+        return free;
+    }
+
+    private static List<TransactionSynchronization> inTransaction(Runnable checkout) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            checkout.run();
+            return new ArrayList<>(TransactionSynchronizationManager.getSynchronizations());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static Map<String, CheckoutItemView> items(CheckoutItemView... views) {
+        Map<String, CheckoutItemView> items = new HashMap<>();
+        for (CheckoutItemView view : views) {
+            items.put(view.getItemNo(), view);
+        }
+        return items;
+    }
+
+    private static CheckoutItemView item(Long itemId, String itemNo, int currentQuantity) {
+        return new CheckoutItemView() {
+            public Long getItemId() {
+                return itemId;
+            }
+
+            public String getItemNo() {
+                return itemNo;
+            }
+
+            public double getActualPrice() {
+                return 100;
+            }
+
+            public double getDiscountPrice() {
+                return 0;
+            }
+
+            public int getCurrentQuantity() {
+                return currentQuantity;
+            }
+        };
+    }
+}
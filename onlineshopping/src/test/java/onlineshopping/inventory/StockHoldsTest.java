@@ -0,0 +1,171 @@
+package onlineshopping.inventory;
+
+import onlineshopping.catalog.ItemChangedEvent;
+import onlineshopping.constants.HoldStatus;
+import onlineshopping.constants.Status;
+import onlineshopping.entity.Order;
+import onlineshopping.entity.StockHold;
+import onlineshopping.history.OrderStatusLog;
+import onlineshopping.repo.StockHoldRepo;
+import onlineshopping.sales.SalesTotals;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class StockHoldsTest {
+
+    private static final Duration TTL = Duration.ofMillis(50);
+
+    private StockHoldRepo holdRepo;
+    private PlatformTransactionManager transactionManager;
+    private ApplicationEventPublisher eventPublisher;
+    private OrderStatusLog statusLog;
+    private SalesTotals salesTotals;
+    private StockHolds holds;
+
+    @BeforeEach
+    void setUp() {
+        holdRepo = mock(StockHoldRepo.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        statusLog = mock(OrderStatusLog.class);
+        salesTotals = mock(SalesTotals.class);
+        holds = new StockHolds(holdRepo, mock(JdbcTemplate.class), transactionManager, eventPublisher, statusLog, salesTotals,
+                TTL, Duration.ofMillis(10), 64);
+    }
+
+    @AfterEach
+    void stop() {
+        holds.stop();
+    }
+
+    @Test
+    void aPaymentConfirmsTheHold() {
+        when(holdRepo.findByOrderNo("OR7")).thenReturn(Optional.of(hold(7L, HoldStatus.held, 15)));
+        when(holdRepo.confirm(eq(7L), any())).thenReturn(1);
+        assertTrue(holds.confirm("OR7"));
+        assertEquals(1, holds.stats().getConfirmed());
+        assertEquals(0, holds.stats().getPaidTooLate());
+    }
+
+    @Test
+    void aPaymentThatLostToTheReleaseIsRefused() {
+        when(holdRepo.findByOrderNo("OR7")).thenReturn(Optional.of(hold(7L, HoldStatus.held, 15)));
+        when(holdRepo.confirm(eq(7L), any())).thenReturn(0);
+        assertFalse(holds.confirm("OR7"));
+        assertEquals(0, holds.stats().getConfirmed());
+        assertEquals(1, holds.stats().getPaidTooLate());
+    }
+
+    @Test
+    void ordersWithoutAHoldStayPayable() {
+        when(holdRepo.findByOrderNo("OR1")).thenReturn(Optional.empty());
+        assertTrue(holds.isPayable("OR1"));
+        assertTrue(holds.confirm("OR1"));
+        verify(holdRepo, never()).confirm(any(), any());
+    }
+
+    @Test
+    void onlyAnOpenHoldIsPayable() {
+        when(holdRepo.findByOrderNo("OR1")).thenReturn(Optional.of(hold(1L, HoldStatus.held, 15)));
+        when(holdRepo.findByOrderNo("OR2")).thenReturn(Optional.of(hold(2L, HoldStatus.held, -1)));
+        when(holdRepo.findByOrderNo("OR3")).thenReturn(Optional.of(hold(3L, HoldStatus.released, 15)));
+        when(holdRepo.findByOrderNo("OR4")).thenReturn(Optional.of(hold(4L, HoldStatus.confirmed, 15)));
+        assertTrue(holds.isPayable("OR1"));
+        assertFalse(holds.isPayable("OR2"));
+        assertFalse(holds.isPayable("OR3"));
+        assertFalse(holds.isPayable("OR4"));
+    }
+
+    @Test
+    void anExpiredHoldPutsTheStockBackAndCancelsTheOrder() {
+        when(holdRepo.cancelOrder(eq(7L), any())).thenReturn(1);
+        when(holdRepo.release(eq(List.of(7L)), any())).thenReturn(List.of(7L));
+        when(holdRepo.findItemQuantities(List.of(7L))).thenReturn(List.<Object[]>of(new Object[]{"IT1", 2L}));
+        holds.hold(List.of(order(7L)));
+
+        verify(salesTotals, timeout(2_000)).canceled(List.of(7L));
+        verify(holdRepo).restock(List.of(7L));
+        verify(statusLog).record(7L, Status.ongoing, Status.canceled);
+        ArgumentCaptor<ItemChangedEvent> event = ArgumentCaptor.forClass(ItemChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals("IT1", event.getValue().getItemNo());
+        assertEquals(2, event.getValue().getStockDelta());
+        assertEquals(0, holds.stats().getPending());
+    }
+
+    @Test
+    void anOrderStaffMovedOnKeepsItsStock() {
+        when(holdRepo.cancelOrder(eq(7L), any())).thenReturn(0);
+        holds.hold(List.of(order(7L)));
+
+        verify(holdRepo, timeout(2_000)).confirm(eq(7L), any());
+        verify(holdRepo, never()).release(any(), any());
+        verify(holdRepo, never()).restock(any());
+        assertEquals(0, holds.stats().getExpired());
+    }
+
+    @Test
+    void aHoldPaidAtTheDeadlineRollsTheCancelBack() {
+        // the order was canceled by the expiry, but the payment confirmed the hold first
+        when(holdRepo.cancelOrder(eq(7L), any())).thenReturn(1);
+        when(holdRepo.release(eq(List.of(7L)), any())).thenReturn(List.of());
+        holds.hold(List.of(order(7L)));
+
+        ArgumentCaptor<TransactionStatus> status = ArgumentCaptor.forClass(TransactionStatus.class);
+        verify(transactionManager, timeout(2_000)).commit(status.capture());
+        assertTrue(status.getValue().isRollbackOnly());
+        verify(holdRepo, never()).restock(any());
+        verifyNoInteractions(statusLog, salesTotals, eventPublisher);
+        assertEquals(0, holds.stats().getExpired());
+    }
+
+    @Test
+    void aConfirmedHoldIsTakenOffTheWheel() throws InterruptedException {
+        when(holdRepo.findByOrderNo("OR7")).thenReturn(Optional.of(hold(7L, HoldStatus.held, 15)));
+        when(holdRepo.confirm(eq(7L), any())).thenReturn(1);
+        holds.hold(List.of(order(7L)));
+        assertEquals(1, holds.stats().getPending());
+        assertTrue(holds.confirm("OR7"));
+        assertEquals(0, holds.stats().getPending());
+
+        Thread.sleep(TTL.toMillis() * 4);
+        verify(holdRepo, never()).cancelOrder(any(), any());
+    }
+
+    @Test
+    void cancelReleasesOnlyTheOpenHolds() {
+        when(holdRepo.release(eq(List.of(1L, 2L)), any())).thenReturn(List.of(2L));
+        when(holdRepo.findItemQuantities(List.of(2L))).thenReturn(List.<Object[]>of(new Object[]{"IT1", 3L}));
+        assertEquals(List.of(2L), holds.cancel(List.of(1L, 2L)));
+        verify(holdRepo).restock(List.of(2L));
+        assertEquals(1, holds.stats().getCanceled());
+    }
+
+    private static StockHold hold(Long orderId, HoldStatus status, long minutesLeft) {
+        return new StockHold(orderId, "OR" + orderId, status.name(), LocalDateTime.now().plusMinutes(minutesLeft), null);
+    }
+
+    private static Order order(Long orderId) {
+        Order order = new Order();
+        order.setOrderId(orderId);
+        order.setOrderNo("OR" + orderId);
+        return order;
+    }
+}
@@ -0,0 +1,51 @@
+package onlineshopping.model;
+
+import onlineshopping.exc.HandleExceptions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeysetCursorTest {
+
+    @Test
+    void decodesWhatItEncoded() {
+        for (LocalDateTime dateCreated : new LocalDateTime[]{
+                LocalDateTime.of(2024, 3, 1, 10, 15),
+                LocalDateTime.of(2024, 3, 1, 10, 15, 30),
+                LocalDateTime.of(2024, 3, 1, 10, 15, 30, 123_456_000)
+        }) {
+            KeysetCursor cursor = KeysetCursor.decode(new KeysetCursor(dateCreated, 4211L).encode());
+            assertEquals(dateCreated, cursor.getDateCreated());
+            assertEquals(4211L, cursor.getId());
+        }
+    }
+
+    @Test
+    void encodedCursorsAreUrlSafe() {
+        String cursor = new KeysetCursor(LocalDateTime.of(2024, 12, 31, 23, 59, 59, 999_999_000), Long.MAX_VALUE).encode();
+        assertTrue(cursor.matches("[A-Za-z0-9_-]+"), cursor);
+    }
+
+    @Test
+    void missingCursorMeansTheFirstPage() {
+        assertNull(KeysetCursor.decode(null));
+        assertNull(KeysetCursor.decode(""));
+        assertNull(KeysetCursor.decode("  "));
+    }
+
+    @Test
+    void malformedCursorsAreRejected() {
+        assertThrows(HandleExceptions.class, () -> KeysetCursor.decode("not base64!"));
+        assertThrows(HandleExceptions.class, () -> KeysetCursor.decode(encode("no separator")));
+        assertThrows(HandleExceptions.class, () -> KeysetCursor.decode(encode("yesterday|12")));
+        assertThrows(HandleExceptions.class, () -> KeysetCursor.decode(encode("2024-03-01T10:15|twelve")));
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,139 @@
+package onlineshopping.retry;
+
+import onlineshopping.exc.ConflictException;
+import onlineshopping.model.RetryStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConflictRetryAspectTest {
+
+    @AfterEach
+    void clearTransaction() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    void retriesUntilTheConflictGoesAway() {
+        ConflictRetryAspect aspect = aspect(4, Duration.ZERO, Duration.ZERO);
+        Checkout checkout = proxy(aspect, new Checkout(2));
+        assertEquals("placed", checkout.place());
+        assertEquals(3, checkout.attempts());
+
+        RetryStats stats = stats(aspect);
+        assertEquals(1, stats.getCalls());
+        assertEquals(2, stats.getConflicts());
+        assertEquals(2, stats.getRetries());
+        assertEquals(0, stats.getExhausted());
+    }
+
+    @Test
+    void givesUpWithAConflictAfterTheLastAttempt() {
+        ConflictRetryAspect aspect = aspect(3, Duration.ZERO, Duration.ZERO);
+        Checkout checkout = proxy(aspect, new Checkout(Integer.MAX_VALUE));
+        ConflictException exhausted = assertThrows(ConflictException.class, checkout::place);
+        assertInstanceOf(OptimisticLockingFailureException.class, exhausted.getCause());
+        assertEquals(3, checkout.attempts());
+
+        RetryStats stats = stats(aspect);
+        assertEquals(3, stats.getConflicts());
+        assertEquals(2, stats.getRetries());
+        assertEquals(1, stats.getExhausted());
+    }
+
+    @Test
+    void otherFailuresAreNotRetried() {
+        ConflictRetryAspect aspect = aspect(4, Duration.ZERO, Duration.ZERO);
+        Checkout checkout = proxy(aspect, new Checkout(Integer.MAX_VALUE, new DataIntegrityViolationException("duplicate order number")));
+        assertThrows(DataIntegrityViolationException.class, checkout::place);
+        assertEquals(1, checkout.attempts());
+        assertEquals(0, stats(aspect).getConflicts());
+    }
+
+    @Test
+    void insideARunningTransactionTheConflictIsLeftToItsOwner() {
+        ConflictRetryAspect aspect = aspect(4, Duration.ZERO, Duration.ZERO);
+        Checkout checkout = proxy(aspect, new Checkout(1));
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        assertThrows(OptimisticLockingFailureException.class, checkout::place);
+        assertEquals(1, checkout.attempts());
+        assertTrue(aspect.stats().isEmpty());
+    }
+
+    @Test
+    void unannotatedMethodsAreNotRetried() {
+        ConflictRetryAspect aspect = aspect(4, Duration.ZERO, Duration.ZERO);
+        Checkout checkout = proxy(aspect, new Checkout(1));
+        assertThrows(OptimisticLockingFailureException.class, checkout::placeWithoutRetry);
+        assertTrue(aspect.stats().isEmpty());
+    }
+
+    @Test
+    void backoffStaysUnderTheCappedCeiling() {
+        // base 20ms doubles to 40ms and 80ms, capped at 30ms: the three waits sum to at most 20 + 30 + 30
+        ConflictRetryAspect aspect = aspect(4, Duration.ofMillis(20), Duration.ofMillis(30));
+        Checkout checkout = proxy(aspect, new Checkout(3));
+        long started = System.nanoTime();
+        assertEquals("placed", checkout.place());
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        assertEquals(4, checkout.attempts());
+        assertTrue(elapsedMillis < 80 + 200, "waited " + elapsedMillis + "ms");
+    }
+
+    private static ConflictRetryAspect aspect(int maxAttempts, Duration baseDelay, Duration maxDelay) {
+        return new ConflictRetryAspect(maxAttempts, baseDelay, maxDelay);
+    }
+
+    private static Checkout proxy(ConflictRetryAspect aspect, Checkout target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(aspect);
+        return factory.getProxy();
+    }
+
+    private static RetryStats stats(ConflictRetryAspect aspect) {
+        List<RetryStats> stats = aspect.stats();
+        assertEquals(1, stats.size());
+        return stats.get(0);
+    }
+
+    // fails its first attempts with the given failure, a lost race unless told otherwise, then goes through
+    static class Checkout {
+        private final int failures;
+        private final RuntimeException failure;
+        private int attempts;
+
+        Checkout(int failures) {
+            this(failures, new OptimisticLockingFailureException("stale item version"));
+        }
+
+        Checkout(int failures, RuntimeException failure) {
+            this.failures = failures;
+            this.failure = failure;
+        }
+
+        @RetryOnConflict
+        public String place() {
+            if (attempts++ < failures) {
+                throw failure;
+            }
+            return "placed";
+        }
+
+        public String placeWithoutRetry() {
+            return place();
+        }
+
+        public int attempts() {
+            return attempts;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package onlineshopping.sales;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountMinSketchTest {
+
+    @Test
+    void unseenKeyEstimatesZero() {
+        assertEquals(0, new CountMinSketch(256, 4).estimate("IT1"));
+    }
+
+    @Test
+    void estimatesNeverFallBelowTheTrueCount() {
+        CountMinSketch sketch = new CountMinSketch(64, 4);
+        Map<String, Long> counts = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            String key = "item-" + random.nextInt(1_000);
+            long quantity = 1 + random.nextInt(5);
+            sketch.add(key, quantity);
+            counts.merge(key, quantity, Long::sum);
+        }
+        counts.forEach((key, count) -> assertTrue(sketch.estimate(key) >= count, key));
+    }
+
+    @Test
+    void overshootStaysUnderTheErrorBoundForMostKeys() {
+        CountMinSketch sketch = new CountMinSketch(1_024, 5);
+        Map<String, Long> counts = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 50_000; i++) {
+            String key = "item-" + random.nextInt(5_000);
+            sketch.add(key, 1);
+            counts.merge(key, 1L, Long::sum);
+        }
+        assertEquals(50_000, sketch.total());
+        long bound = sketch.errorBound();
+        long over = counts.entrySet().stream().filter(count -> sketch.estimate(count.getKey()) - count.getValue() > bound).count();
+        // allowed to fail with probability e^-depth per key
+        assertTrue(over <= counts.size() * (1 - sketch.confidence()) * 2, over + " keys over the bound");
+    }
+
+    @Test
+    void keysWithTheSameHashCodeAreCountedApart() {
+        // "Aa" and "BB" share a String.hashCode, keys hashed from it would share a counter in every row
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        CountMinSketch sketch = new CountMinSketch(1_024, 4);
+        sketch.add("Aa", 100);
+        assertEquals(0, sketch.estimate("BB"));
+    }
+
+    @Test
+    void addReturnsTheNewEstimate() {
+        CountMinSketch sketch = new CountMinSketch(256, 4);
+        assertEquals(3, sketch.add("IT1", 3));
+        assertEquals(5, sketch.add("IT1", 2));
+        assertEquals(5, sketch.estimate("IT1"));
+    }
+
+    @Test
+    void countsGoDownAgain() {
+        CountMinSketch sketch = new CountMinSketch(256, 4);
+        sketch.add("IT1", 5);
+        sketch.add("IT1", -2);
+        assertEquals(3, sketch.estimate("IT1"));
+        assertEquals(3, sketch.total());
+    }
+
+    @Test
+    void clearForgetsEverything() {
+        CountMinSketch sketch = new CountMinSketch(256, 4);
+        sketch.add("IT1", 5);
+        sketch.clear();
+        assertEquals(0, sketch.estimate("IT1"));
+        assertEquals(0, sketch.total());
+        assertEquals(0, sketch.errorBound());
+    }
+
+    @Test
+    void widthIsRoundedUpToAPowerOfTwo() {
+        CountMinSketch sketch = new CountMinSketch(1_000, 3);
+        sketch.add("IT1", 1_024);
+        // e / 1024 of the total, rounded up
+        assertEquals(3, sketch.errorBound());
+        assertEquals(1 - Math.exp(-3), sketch.confidence(), 1e-12);
+    }
+}
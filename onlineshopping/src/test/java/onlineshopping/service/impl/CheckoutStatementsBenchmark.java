@@ -0,0 +1,151 @@
+package onlineshopping.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import onlineshopping.model.CartItem;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statements each checkout sends to the database, for a 1-line and a 10-line cart. They are counted at the
+ * DataSource, under Hibernate and JdbcTemplate alike: a round trip is one execute or one executeBatch, a batched
+ * statement is one addBatch. Every checkout runs inside a transaction that is rolled back, so no stock is taken.
+ * Runs against the configured database and only when asked:
+ * mvn test -Dtest=CheckoutStatementsBenchmark -Dbenchmark=true
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+class CheckoutStatementsBenchmark {
+
+    private static final int[] CART_LINES = {1, 10};
+    private static final int ROUNDS = 2;
+
+    @Autowired
+    private OrderServiceImpl orderService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private StatementCounter counter;
+
+    @Test
+    void statementsPerCheckout() {
+        List<String> emails = jdbcTemplate.queryForList("SELECT email FROM users LIMIT 1", String.class);
+        List<String> itemNos = jdbcTemplate.queryForList(
+                "SELECT item_number FROM items WHERE current_quantity > 0 ORDER BY item_number LIMIT 10", String.class);
+        Assumptions.assumeFalse(emails.isEmpty() || itemNos.size() < 10,
+                "The benchmark needs a user and 10 items in stock in the database");
+
+        // the first round warms up the id pools and the stock counters, so the second one shows a steady-state checkout
+        for (int round = 1; round <= ROUNDS; round++) {
+            for (int lines : CART_LINES) {
+                List<CartItem> cart = new ArrayList<>();
+                for (String itemNo : itemNos.subList(0, lines)) {
+                    cart.add(new CartItem(itemNo, 1, List.of(), List.of()));
+                }
+                counter.reset();
+                transactionTemplate.executeWithoutResult(status -> {
+                    orderService.processOrder(emails.get(0), "Benchmark street", "Benchmark region", cart, null);
+                    status.setRollbackOnly();
+                });
+                log.info("round {}  {}-line cart  {} round trips  {} statements executed  {} batched", round, lines,
+                        counter.executed.get() + counter.batches.get(), counter.executed.get(), counter.batched.get());
+            }
+        }
+    }
+
+    static class StatementCounter {
+        final AtomicLong executed = new AtomicLong();
+        final AtomicLong batches = new AtomicLong();
+        final AtomicLong batched = new AtomicLong();
+
+        void reset() {
+            executed.set(0);
+            batches.set(0);
+            batched.set(0);
+        }
+
+        // counts on the statements of every connection the data source hands out
+        DataSource wrap(DataSource dataSource) {
+            return proxy(DataSource.class, dataSource, (target, method, args) -> {
+                Object result = invoke(target, method, args);
+                return method.getName().equals("getConnection")
+                        ? proxy(Connection.class, result, (connection, connectionMethod, connectionArgs) -> {
+                            Object created = invoke(connection, connectionMethod, connectionArgs);
+                            return created instanceof Statement ? statement(connectionMethod.getReturnType(), created) : created;
+                        })
+                        : result;
+            });
+        }
+
+        private Object statement(Class<?> type, Object statement) {
+            return proxy(type, statement, (target, method, args) -> {
+                switch (method.getName()) {
+                    case "execute", "executeQuery", "executeUpdate", "executeLargeUpdate" -> executed.incrementAndGet();
+                    case "executeBatch", "executeLargeBatch" -> batches.incrementAndGet();
+                    case "addBatch" -> batched.incrementAndGet();
+                    default -> {
+                    }
+                }
+                return invoke(target, method, args);
+            });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+
+        private static <T> T proxy(Class<T> type, Object target, Handler handler) {
+            InvocationHandler invocationHandler = (proxy, method, args) -> handler.handle(target, method, args);
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler));
+        }
+
+        private interface Handler {
+            Object handle(Object target, Method method, Object[] args) throws Throwable;
+        }
+    }
+
+    @TestConfiguration
+    static class CountingDataSource {
+
+        @Bean
+        StatementCounter statementCounter() {
+            return new StatementCounter();
+        }
+
+        @Bean
+        static BeanPostProcessor countStatements(ObjectProvider<StatementCounter> counter) {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? counter.getObject().wrap(dataSource) : bean;
+                }
+            };
+        }
+    }
+}